@@ -6,9 +6,11 @@ package bot;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import common.SegmentedLog;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -96,21 +98,30 @@ public class AutoReplyBot extends TelegramLongPollingBot {
     }
 
     private void storeMessage(Message message) {
-        try (FileWriter writer = new FileWriter(new File(FILE_PATH), true)) {
-            Storable botMsg;
-            if (message.hasLocation()) {
-                botMsg = new LocationBotMessage(
-                        message.getChatId().toString(),
-                        message.getLocation().getLatitude(),
-                        message.getLocation().getLongitude()
-                );
-            } else {
-                botMsg = new TextBotMessage(
-                        message.getChatId().toString(),
-                        message.getText()
-                );
-            }
-            writer.write(botMsg.toJson() + System.lineSeparator());
+        Storable botMsg;
+        if (message.hasLocation()) {
+            botMsg = new LocationBotMessage(
+                    message.getChatId().toString(),
+                    message.getLocation().getLatitude(),
+                    message.getLocation().getLongitude()
+            );
+        } else {
+            botMsg = new TextBotMessage(
+                    message.getChatId().toString(),
+                    message.getText()
+            );
+        }
+
+        // messages.txt is segmented; write to the current segment, starting a new one when full
+        // (in UTF-8, as its readers decode it), under the log's lock so no one rolls it meanwhile
+        SegmentedLog log = SegmentedLog.forFile(new File(FILE_PATH));
+        try {
+            log.locked(() -> {
+                try (FileWriter writer = new FileWriter(log.rollIfNeeded(-1), StandardCharsets.UTF_8, true)) {
+                    writer.write(botMsg.toJson() + System.lineSeparator());
+                }
+                return null;
+            });
         } catch (IOException e) { e.printStackTrace(); }
     }
 
@@ -0,0 +1,182 @@
+package bot;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long an emergency button press takes to reach the guardian
+ * alert, through each way the Notifier receives events:
+ * <ul>
+ * <li>log: the file watcher on emergency_logs.txt only</li>
+ * <li>socket: the local socket ({@link common.EmergencySocket}), log as fallback</li>
+ * <li>ring: the shared-memory ring ({@link common.EmergencyRing}), log as fallback</li>
+ * </ul>
+ * Each press goes through the frontend's own code, loaded from its
+ * compiled classes: {@code ClinicRepository.getInstance().logEmergency},
+ * with the emergency log's durability ({@code -Dclinic.emergency.durability},
+ * default group) and the writer's publish step. A real Notifier in the same
+ * JVM watches the current directory; its bot records the time of each
+ * alert instead of calling Telegram. Every mode loads the frontend afresh
+ * with only its own path switched on.
+ *
+ * For each press two latencies are reported, from the call: until it
+ * returned (what the student waits for) and until the alert (what the
+ * guardian waits for). Presses are paced, one at a time. Duplicate alerts
+ * (an event delivered twice) and alerts that never came are counted.
+ *
+ * The frontend and the Notifier share the current directory, so run this
+ * from an empty directory; the files it creates are deleted at the end.
+ *
+ * Usage (from an empty folder beside backend/oops):
+ *   mvn -f ..\pom.xml exec:java -Dexec.mainClass="bot.EmergencyLatencyBenchmark"
+ *       -Dexec.args="frontendClassesDir [presses]"
+ */
+public class EmergencyLatencyBenchmark {
+
+	private static final String STUDENT_ID = "2024A7PS0001U";
+	private static final int WARMUP = 200;
+	private static final long TIMEOUT_MILLIS = 2_000;
+
+	// The frontend and the Notifier log every event; results go to the real stdout
+	private static final PrintStream out = System.out;
+	private static final PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+	/**
+	 * Bot that stays offline and notes when each alert would have been sent.
+	 */
+	private static class RecordingBot extends AutoReplyBot {
+		final BlockingQueue<Long> alerts = new LinkedBlockingQueue<>();
+
+		@Override
+		public void registerBot() {
+		}
+
+		@Override
+		public void sendText(String chatId, String text) {
+			alerts.add(System.nanoTime());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1 || !new File(args[0]).isDirectory()) {
+			System.err.println("Usage: EmergencyLatencyBenchmark frontendClassesDir [presses]");
+			System.exit(1);
+		}
+		URL frontendClasses = new File(args[0]).toURI().toURL();
+		int presses = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+		File dir = new File(".").getAbsoluteFile();
+		Set<String> existing = new HashSet<>(Arrays.asList(dir.list()));
+		if (existing.contains("emergency_logs.txt") || existing.contains("medical_registrations.csv")) {
+			System.err.println("Run from an empty directory: clinic files already exist here.");
+			System.exit(1);
+		}
+		// Read by Notifier when it is loaded, so set before first use
+		System.setProperty("clinic.frontend.dir", ".");
+		try (FileWriter writer = new FileWriter("medical_registrations.csv")) {
+			writer.write("FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramNo,BloodType,Allergies,ChronicIllnesses,InsuranceType,GuardianName,GuardianContact\n");
+			writer.write("\"Test Student\",\"" + STUDENT_ID + "\",\"Male\",\"f20240001@dubai.bits-pilani.ac.in\",\"+971501234567\",\"+971551234567\",\"O+\",\"None\",\"None\",\"Basic\",\"Guardian\",\"123456789\"\n");
+		}
+
+		RecordingBot bot = new RecordingBot();
+		System.setOut(quiet);
+		try {
+			Notifier notifier = new Notifier(bot);
+			Thread watcher = new Thread(() -> {
+				try {
+					notifier.watchMessagesFile();
+				} catch (IOException | InterruptedException e) {
+					e.printStackTrace();
+				}
+			}, "NotifierWatcher");
+			watcher.setDaemon(true);
+			watcher.start();
+			Thread.sleep(500); // Let it register the watch and open the ring and socket
+
+			// The ring's producer side stays taken by the loader that opened it, so it goes last
+			run("log", presses, bot, frontendClasses, true, true);
+			run("socket", presses, bot, frontendClasses, true, false);
+			run("ring", presses, bot, frontendClasses, false, true);
+		} finally {
+			System.setOut(out);
+			for (String name : dir.list()) {
+				if (!existing.contains(name)) {
+					new File(dir, name).delete();
+				}
+			}
+		}
+		System.exit(0); // The Notifier's watcher does not stop on its own
+	}
+
+	private static void run(String mode, int presses, RecordingBot bot, URL frontendClasses, boolean ringDisabled,
+			boolean socketDisabled) throws Exception {
+		System.setProperty("clinic.ring.disabled", Boolean.toString(ringDisabled));
+		System.setProperty("clinic.socket.disabled", Boolean.toString(socketDisabled));
+		URLClassLoader frontend = new URLClassLoader(new URL[] { frontendClasses }, EmergencyLatencyBenchmark.class.getClassLoader());
+		Class<?> repositoryClass = Class.forName("util.ClinicRepository", true, frontend);
+		Object repository = repositoryClass.getMethod("getInstance").invoke(null);
+		Method logEmergency = repositoryClass.getMethod("logEmergency", String.class, String.class);
+
+		long[] returned = new long[presses];
+		long[] alerted = new long[presses];
+		int missed = 0;
+		int failed = 0;
+		int duplicates = 0;
+		for (int i = -WARMUP; i < presses; i++) {
+			long start = System.nanoTime();
+			boolean logged;
+			try {
+				logged = (Boolean) logEmergency.invoke(repository, STUDENT_ID, "Test Student");
+			} catch (InvocationTargetException e) {
+				logged = false;
+			}
+			long end = System.nanoTime();
+			Long alert = bot.alerts.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			while (alert != null && alert < start) {
+				duplicates++; // A late second copy of an earlier press
+				alert = bot.alerts.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			if (i >= 0) {
+				returned[i] = end - start;
+				if (!logged) {
+					failed++;
+				}
+				if (alert == null) {
+					missed++;
+					alerted[i] = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+				} else {
+					alerted[i] = alert - start;
+				}
+			}
+			Thread.sleep(1);
+		}
+		// A second copy of any event (from the log after the fast path) would show up here
+		Thread.sleep(200);
+		duplicates += bot.alerts.size();
+		bot.alerts.clear();
+
+		Arrays.sort(returned);
+		Arrays.sort(alerted);
+		out.printf(Locale.ROOT, "%-6s returned p50 %8.1f us p99 %8.1f us | alerted p50 %8.1f us p99 %8.1f us | failed %d | missed %d | duplicates %d%n",
+			mode, micros(returned, 0.50), micros(returned, 0.99), micros(alerted, 0.50), micros(alerted, 0.99), failed, missed, duplicates);
+	}
+
+	private static double micros(long[] sorted, double quantile) {
+		int i = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+		return sorted[Math.max(i, 0)] / 1_000.0;
+	}
+}
@@ -1,24 +1,35 @@
 package bot;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 
+import common.EmergencyLog;
+import common.EmergencyRing;
+import common.EmergencySocket;
+import common.JdbcStudentRegistry;
+import common.LogTailer;
+import common.OffHeapRecordStore;
+import common.RegistrySnapshot;
+import common.SegmentedLog;
+import common.StudentRegistry;
+
 /**
  * Notifier - Maps Student IDs to Guardian Telegram IDs and sends alerts
  * FIXED: Corrected CSV column indices to match your actual CSV structure
@@ -26,13 +37,43 @@ import com.google.gson.JsonSyntaxException;
 public class Notifier {
 
 	private static final String MESSAGES_FILE = "messages.txt";
-	private static final String EMERGENCY_LOG_FILE = "..\\..\\frontend\\emergency_logs.txt";
-	private static final String STUDENTS_FILE = "..\\..\\frontend\\medical_registrations.csv";
+	// -Dclinic.frontend.dir points at the frontend's working directory
+	private static final String FRONTEND_DIR = System.getProperty("clinic.frontend.dir", "..\\..\\frontend");
+	private static final String EMERGENCY_LOG_FILE = new File(FRONTEND_DIR, "emergency_logs.txt").getPath();
+	private static final String STUDENTS_FILE = new File(FRONTEND_DIR, "medical_registrations.csv").getPath();
 	private static final Gson gson = new Gson();
 
-	private final Map<String, String> studentToGuardian = new HashMap<>();
-	private final Map<String, String> studentIdToName = new HashMap<>();
+	// -Dclinic.registry.store=offheap keeps the registry in direct memory instead of
+	// mapping the snapshot; -Dclinic.registry.extra lists more campus CSVs to load with it.
+	// -Dclinic.registry.store=jdbc reads the students table of the frontend's embedded
+	// database (-Dclinic.repository=jdbc there) at -Dclinic.repository.url
+	private static final boolean OFF_HEAP_REGISTRY = "offheap".equalsIgnoreCase(System.getProperty("clinic.registry.store"));
+	private static final boolean JDBC_REGISTRY = "jdbc".equalsIgnoreCase(System.getProperty("clinic.registry.store"));
+	private static final String REPOSITORY_URL = System.getProperty("clinic.repository.url", "jdbc:h2:./../../frontend/clinic_db;AUTO_SERVER=TRUE");
+	private static final String EXTRA_REGISTRIES = System.getProperty("clinic.registry.extra", "");
+
+	// Emergency events also arrive over a local socket and through a shared-memory
+	// ring next to the log (-Dclinic.socket.disabled / -Dclinic.ring.disabled turn
+	// them off); once idle, the ring reader checks it every -Dclinic.ring.parkMicros
+	private static final boolean SOCKET_DISABLED = Boolean.getBoolean("clinic.socket.disabled");
+	private static final boolean RING_DISABLED = Boolean.getBoolean("clinic.ring.disabled");
+	private static final long RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("clinic.ring.parkMicros", 100));
+	private static final int RING_SPINS = 1000;
+
 	private final AutoReplyBot bot;
+	private StudentRegistry registry;
+
+	// Reads messages.txt on the watcher thread, and the partial JSON message
+	// carried between its lines
+	private final LogTailer messageTailer = new LogTailer(this::readMessageLine);
+	private final StringBuilder msgBuffer = new StringBuilder();
+	private int openBraces = 0;
+
+	// Emergency events alerted from the socket or ring and not yet read from the
+	// log, and those read from the log lately, by eventKey; guarded by this
+	private static final int RECENT_EVENTS = 4096;
+	private final Set<String> alertedEarly = recentEvents();
+	private final Set<String> loggedRecently = recentEvents();
 
 	// ANSI color codes
 	private static final String GREEN = "\u001B[32m";
@@ -47,54 +88,49 @@ public class Notifier {
 	}
 
 	/**
-	 * FIXED: Updated to match your CSV structure
+	 * Opens the registry through its binary snapshot (rebuilt from the CSV
+	 * if stale) instead of re-parsing the whole CSV on every start, or loads
+	 * it (and any extra campus registries) into the off-heap record store.
 	 * CSV Header: FullName(0), BITS_ID(1), Gender(2), BITS_Email(3), MobileNo(4), 
 	 *            TelegramNo(5), BloodType(6), Allergies(7), ChronicIllnesses(8), 
 	 *            InsuranceType(9), GuardianName(10), GuardianContact(11)
 	 */
 	private void loadDatabase() {
+		if (JDBC_REGISTRY) {
+			try {
+				JdbcStudentRegistry opened = JdbcStudentRegistry.open(REPOSITORY_URL);
+				System.out.println(GREEN + "[INFO] Student registry: " + opened.size() + " records in " + REPOSITORY_URL + RESET);
+				registry = opened;
+			} catch (SQLException | IllegalStateException e) {
+				System.out.println(RED + "[ERROR] Failed to open student database: " + e.getMessage() + RESET);
+			}
+			return;
+		}
+
 		File file = new File(STUDENTS_FILE);
 		if (!file.exists()) {
 			System.out.println(RED + "[ERROR] Database file not found at: " + file.getAbsolutePath() + RESET);
 			return;
 		}
 
-		try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-			String line;
-			int rowNum = 0;
-			while ((line = br.readLine()) != null) {
-				if (rowNum++ == 0) continue; // Skip header
-
-				// Remove quotes and split by comma
-				line = line.replaceAll("\"", "");
-				String[] parts = line.split(",");
-
-				// FIXED: Corrected indices for your CSV structure
-				// parts[0] = FullName
-				// parts[1] = BITS_ID
-				// parts[5] = TelegramNo (Student's Telegram)
-				// parts[10] = GuardianName
-				// parts[11] = GuardianContact (Guardian's Telegram)
-				
-				if (parts.length >= 12) {
-					String studentName = parts[0].trim();
-					String bitsId = parts[1].trim();              // Key: BITS ID
-					String studentTelegramId = parts[5].trim();  // FIXED: Index 5 (was 6)
-					String guardianName = parts[10].trim();
-					String guardianTelegramId = parts[11].trim(); // Value: Guardian's Telegram ID
-
-					if (!guardianTelegramId.isEmpty() && !bitsId.isEmpty()) {
-						// Map BITS ID -> Guardian (For emergency_logs.txt which sends BITS_ID)
-						studentToGuardian.put(bitsId, guardianTelegramId);
-						studentIdToName.put(bitsId, studentName);
-						
-						System.out.println(GREEN + "[LOADED] " + studentName + " (" + bitsId + 
-							") -> Guardian: " + guardianName + " (" + guardianTelegramId + ")" + RESET);
+		try {
+			long start = System.nanoTime();
+			if (OFF_HEAP_REGISTRY) {
+				OffHeapRecordStore store = OffHeapRecordStore.load(file);
+				for (String extra : EXTRA_REGISTRIES.split(File.pathSeparator)) {
+					if (!extra.trim().isEmpty()) {
+						int added = store.addCsv(new File(extra.trim()));
+						System.out.println(GREEN + "[INFO] Added " + added + " students from " + extra.trim() + RESET);
 					}
 				}
+				System.out.println(GREEN + "[INFO] Off-heap registry: " + store.offHeapBytes() / 1024 + " KB direct memory" + RESET);
+				registry = store;
+			} else {
+				registry = RegistrySnapshot.open(file);
 			}
+			long millis = (System.nanoTime() - start) / 1_000_000;
 			System.out.println(GREEN + "[INFO] Database loaded successfully!" + RESET);
-			System.out.println(GREEN + "[INFO] Student -> Guardian Mapping: " + studentToGuardian.size() + " records" + RESET);
+			System.out.println(GREEN + "[INFO] Student registry: " + registry.size() + " records (" + millis + " ms)" + RESET);
 
 		} catch (IOException e) {
 			System.out.println(RED + "[ERROR] Failed to load database: " + e.getMessage() + RESET);
@@ -103,39 +139,81 @@ public class Notifier {
 	}
 
 	/**
-	 * Monitors both messages.txt (for location logs) and emergency_logs.txt (for urgent button clicks)
+	 * Looks up a student's registry row, reopening the registry first if a
+	 * CSV has changed since it was loaded (e.g. a new registration). A
+	 * lookup that fails (e.g. the database connection dropped) is logged
+	 * and tried once more on a reopened registry; it never throws, as it
+	 * runs on the ring, socket and watcher threads.
+	 */
+	private synchronized String[] findStudent(String studentId) {
+		for (int attempt = 0; attempt < 2; attempt++) {
+			if (registry == null || !registry.isCurrent()) {
+				loadDatabase();
+			}
+			if (registry == null) {
+				return null;
+			}
+			try {
+				return registry.find(studentId);
+			} catch (RuntimeException e) {
+				System.out.println(RED + "[ERROR] Student lookup failed: " + e.getMessage() + RESET);
+				closeRegistry();
+			}
+		}
+		return null;
+	}
+
+	private synchronized int registrySize() {
+		try {
+			return registry == null ? 0 : registry.size();
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+
+	private synchronized void closeRegistry() {
+		if (registry instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) registry).close();
+			} catch (Exception e) {
+				// Already broken; it is being dropped
+			}
+		}
+		registry = null;
+	}
+
+	/**
+	 * Monitors both messages.txt (for location logs) and emergency_logs.txt (for urgent button clicks).
+	 * Both are segmented logs: reading moves on to the next segment when the writer rolls over,
+	 * so a change to any file in a log's directory triggers a read of that log.
 	 */
 	public void watchMessagesFile() throws IOException, InterruptedException {
 		WatchService watchService = FileSystems.getDefault().newWatchService();
 		Map<WatchKey, Path> keys = new HashMap<>();
 
 		// 1. Setup Watcher for MESSAGES_FILE
-		File msgFile = new File(MESSAGES_FILE);
-		Path msgDir = Paths.get(MESSAGES_FILE).getParent();
-		if (msgDir != null) {
-			WatchKey key = msgDir.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
-			keys.put(key, msgDir);
-		}
+		SegmentedLog msgLog = SegmentedLog.forFile(new File(MESSAGES_FILE));
+		Path msgDir = msgLog.getBaseFile().toPath().getParent();
+		WatchKey msgKey = msgDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		keys.put(msgKey, msgDir);
 
 		// 2. Setup Watcher for EMERGENCY_LOG_FILE
-		File emgFile = new File(EMERGENCY_LOG_FILE);
-		Path emgDir = Paths.get(EMERGENCY_LOG_FILE).getParent();
-		if (emgDir != null && !emgDir.equals(msgDir)) {
-			WatchKey key = emgDir.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
+		SegmentedLog emgLog = SegmentedLog.forFile(new File(EMERGENCY_LOG_FILE));
+		Path emgDir = emgLog.getBaseFile().toPath().getParent();
+		if (!emgDir.equals(msgDir)) {
+			WatchKey key = emgDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
 			keys.put(key, emgDir);
 		}
 
 		System.out.println(GREEN + "[INFO] Watching files for new logs..." + RESET);
 		System.out.println("   - " + MESSAGES_FILE);
 		System.out.println("   - " + EMERGENCY_LOG_FILE);
+		startSocketListener();
+		startRingReader();
 
-		// Track file sizes
-		long lastMsgSize = msgFile.exists() ? msgFile.length() : 0;
-		long lastEmgSize = emgFile.exists() ? emgFile.length() : 0;
-
-		// Buffers
-		StringBuilder msgBuffer = new StringBuilder();
-		int openBraces = 0;
+		// Track positions (segment and offset), starting at the current ends
+		SegmentedLog.Position msgPosition = msgLog.end();
+		SegmentedLog.Position emgPosition = emgLog.end();
 
 		while (true) {
 			WatchKey key = watchService.take();
@@ -145,55 +223,100 @@ public class Notifier {
 				key.reset();
 				continue;
 			}
+			key.pollEvents();
 
-			for (WatchEvent<?> event : key.pollEvents()) {
-				Path changed = (Path) event.context();
-				File changedFile = dir.resolve(changed).toFile();
-
-				// === CASE 1: Messages File Changed (Location Log) ===
-				if (changedFile.getAbsolutePath().equals(msgFile.getAbsolutePath())) {
-					long newSize = msgFile.length();
-					if (newSize > lastMsgSize) {
-						try (RandomAccessFile raf = new RandomAccessFile(msgFile, "r")) {
-							raf.seek(lastMsgSize);
-							String line;
-							while ((line = raf.readLine()) != null) {
-								line = line.trim();
-								if (line.isEmpty()) continue;
-
-								// Basic JSON parsing logic
-								for (char c : line.toCharArray()) {
-									if (c == '{') openBraces++;
-									else if (c == '}') openBraces--;
-								}
-								msgBuffer.append(line);
-
-								if (openBraces == 0 && msgBuffer.length() > 0) {
-									processMessageLog(msgBuffer.toString());
-									msgBuffer.setLength(0);
-								}
-							}
-						}
-						lastMsgSize = newSize;
-					}
-				}
+			// === CASE 1: Messages Log Changed (Location Log) ===
+			if (dir.equals(msgDir)) {
+				msgPosition = msgLog.read(msgPosition, messageTailer);
+			}
+
+			// === CASE 2: Emergency Log Changed (Button Click Log) ===
+			// Only complete lines are consumed; an event still being written is read next time
+			if (dir.equals(emgDir)) {
+				emgPosition = emgLog.read(emgPosition, (segment, from) -> EmergencyLog.read(segment, from, this::processEmergencyEntry));
+			}
+			key.reset();
+		}
+	}
+
+	/**
+	 * Accepts emergency events pushed by the frontend over the local socket
+	 * beside the emergency log.
+	 */
+	private void startSocketListener() {
+		if (SOCKET_DISABLED) return;
+		Path path = EmergencySocket.pathFor(new File(EMERGENCY_LOG_FILE));
+		try {
+			if (EmergencySocket.Listener.start(path, this::processPushedEntry) == null) {
+				System.out.println(YELLOW + "[WARN] Another Notifier is listening on " + path + "; using the log only" + RESET);
+				return;
+			}
+			System.out.println("   - " + path + " (socket)");
+		} catch (IOException | UnsupportedOperationException e) {
+			System.out.println(RED + "[WARN] Emergency socket unavailable, using the log only: " + e.getMessage() + RESET);
+		}
+	}
+
+	/**
+	 * Takes emergency events from the shared-memory ring as the frontend
+	 * publishes them, without waiting for the file watcher: after each event
+	 * the reader spins briefly, then parks between checks.
+	 */
+	private void startRingReader() {
+		if (RING_DISABLED) return;
+		EmergencyRing ring;
+		try {
+			ring = EmergencyRing.openConsumer(EmergencyRing.fileFor(new File(EMERGENCY_LOG_FILE)));
+		} catch (IOException e) {
+			System.out.println(RED + "[WARN] Emergency ring unavailable, using the log only: " + e.getMessage() + RESET);
+			return;
+		}
+		if (ring == null) {
+			System.out.println(YELLOW + "[WARN] Another Notifier is reading the emergency ring; using the log only" + RESET);
+			return;
+		}
 
-				// === CASE 2: Emergency File Changed (Button Click Log) ===
-				else if (changedFile.getAbsolutePath().equals(emgFile.getAbsolutePath())) {
-					long newSize = emgFile.length();
-					if (newSize > lastEmgSize) {
-						try (RandomAccessFile raf = new RandomAccessFile(emgFile, "r")) {
-							raf.seek(lastEmgSize);
-							String line;
-							while ((line = raf.readLine()) != null) {
-								processEmergencyLog(line.trim());
-							}
-						}
-						lastEmgSize = newSize;
+		Thread reader = new Thread(() -> {
+			int idle = 0;
+			while (true) {
+				try {
+					if (ring.poll(this::processRingEvent) > 0) {
+						idle = 0;
+					} else if (idle < RING_SPINS) {
+						idle++;
+						Thread.onSpinWait();
+					} else {
+						LockSupport.parkNanos(RING_PARK_NANOS);
 					}
+				} catch (RuntimeException e) {
+					// The event was already taken off the ring; keep reading the next ones
+					System.out.println(RED + "[ERROR] Emergency ring event failed: " + e.getMessage() + RESET);
 				}
 			}
-			key.reset();
+		}, "EmergencyRingReader");
+		reader.setDaemon(true);
+		reader.start();
+		System.out.println("   - " + EmergencyRing.fileFor(new File(EMERGENCY_LOG_FILE)).getName() + " (shared memory)");
+	}
+
+	/**
+	 * Collects the JSON messages in messages.txt from the lines read by the
+	 * tailer; a message may span several lines.
+	 */
+	private void readMessageLine(String line) {
+		line = line.trim();
+		if (line.isEmpty()) return;
+
+		// Basic JSON parsing logic
+		for (char c : line.toCharArray()) {
+			if (c == '{') openBraces++;
+			else if (c == '}') openBraces--;
+		}
+		msgBuffer.append(line);
+
+		if (openBraces == 0 && msgBuffer.length() > 0) {
+			processMessageLog(msgBuffer.toString());
+			msgBuffer.setLength(0);
 		}
 	}
 
@@ -215,7 +338,74 @@ public class Notifier {
 		}
 	}
 
-	// --- LOGIC FOR EMERGENCY_LOGS.TXT (Raw ID from Frontend) ---
+	// --- LOGIC FOR EMERGENCY_LOGS.TXT (Framed events from Frontend) ---
+	private void processEmergencyEntry(EmergencyLog.Entry entry) {
+		if (!entry.isIntact()) {
+			// Torn or damaged frame: never alert on garbage
+			System.out.println(RED + "[WARN] Skipping damaged emergency log record: " + entry.getPayload() + RESET);
+			return;
+		}
+		if (!firstFromLog(entry.getSequence(), entry.getPayload())) {
+			return; // Already alerted from the ring
+		}
+		processEmergencyLog(entry.getPayload().trim());
+	}
+
+	private void processRingEvent(long sequence, String payload) {
+		if (firstFromFastPath(sequence, payload)) {
+			processEmergencyLog(payload.trim());
+		}
+	}
+
+	private void processPushedEntry(EmergencyLog.Entry entry) {
+		if (entry.isIntact() && !entry.isLegacy() && firstFromFastPath(entry.getSequence(), entry.getPayload())) {
+			processEmergencyLog(entry.getPayload().trim());
+		}
+	}
+
+	/**
+	 * Every event reaches the log, most also the socket and the ring, in
+	 * any order. An event is alerted on whichever comes first.
+	 */
+	private synchronized boolean firstFromFastPath(long sequence, String payload) {
+		String key = eventKey(sequence, payload);
+		if (loggedRecently.contains(key)) {
+			return false;
+		}
+		return alertedEarly.add(key);
+	}
+
+	private synchronized boolean firstFromLog(long sequence, String payload) {
+		if (sequence < 0) {
+			return true; // Legacy line, never in the ring
+		}
+		String key = eventKey(sequence, payload);
+		loggedRecently.add(key);
+		return !alertedEarly.remove(key);
+	}
+
+	/**
+	 * What identifies one event on every path: its sequence number together
+	 * with its text (time, student and type), so two events never pass for
+	 * one even if their numbers collide.
+	 */
+	private static String eventKey(long sequence, String payload) {
+		return sequence + "|" + payload.trim();
+	}
+
+	/**
+	 * A set that keeps only the newest RECENT_EVENTS keys; a copy of an event
+	 * arrives long before that many newer ones.
+	 */
+	private static Set<String> recentEvents() {
+		return Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > RECENT_EVENTS;
+			}
+		});
+	}
+
 	private void processEmergencyLog(String logLine) {
 		if (logLine.isEmpty()) return;
 
@@ -242,10 +432,12 @@ public class Notifier {
 
 	// --- SHARED HELPER TO SEND TO TELEGRAM ---
 	private void sendTelegramAlert(String studentId, String messageContent) {
-		String guardianId = studentToGuardian.get(studentId);
-		String studentName = studentIdToName.get(studentId);
+		// parts[0] = FullName, parts[11] = GuardianContact (Guardian's Telegram ID)
+		String[] parts = findStudent(studentId);
+		String guardianId = parts != null && parts.length >= 12 ? parts[11].trim() : null;
+		String studentName = parts != null ? parts[0].trim() : null;
 
-		if (guardianId != null && studentName != null) {
+		if (guardianId != null && !guardianId.isEmpty() && studentName != null) {
 			String finalMessage = "Student: " + studentName + " (" + studentId + ")\n\n" + messageContent;
 
 			System.out.println(YELLOW + "[SENDING] To Guardian (" + guardianId + "): " + finalMessage + RESET);
@@ -253,7 +445,7 @@ public class Notifier {
 
 		} else {
 			System.out.println(RED + "[ERROR] Unknown Student ID: " + studentId + 
-				" - Cannot find guardian. Available IDs: " + studentToGuardian.keySet() + RESET);
+				" - Cannot find guardian in " + registrySize() + " registered students." + RESET);
 		}
 	}
 
@@ -0,0 +1,158 @@
+package common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Throughput comparison of {@link CsvReader} against the split-based parsers
+ * it replaced: the Notifier's replaceAll + split, the StudentDataFetcher's
+ * split(",", -1) with per-field quote stripping, and the StudentDashboard's
+ * replace + split. Rows are generated in the medical_registrations.csv layout,
+ * with a share of quoted fields.
+ *
+ * Usage: java common.CsvParserBenchmark [rows] [rounds]
+ */
+public class CsvParserBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File csv = File.createTempFile("csv-bench", ".csv");
+        csv.deleteOnExit();
+        generate(csv, rows);
+        System.out.printf("Generated %,d rows (%,d bytes)%n", rows, csv.length());
+
+        long checksum = 0;
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("Round " + round + ":");
+            checksum += time("Notifier replaceAll+split", csv, rows, CsvParserBenchmark::notifierSplit);
+            checksum += time("Fetcher split+strip     ", csv, rows, CsvParserBenchmark::fetcherSplit);
+            checksum += time("Dashboard replace+split ", csv, rows, CsvParserBenchmark::dashboardSplit);
+            checksum += time("CsvReader (reused row)  ", csv, rows, CsvParserBenchmark::csvReader);
+            checksum += time("CsvReader + toArray     ", csv, rows, CsvParserBenchmark::csvReaderToArray);
+        }
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+    private interface Parser {
+        long parse(Reader in) throws IOException;
+    }
+
+    private static long time(String label, File csv, int rows, Parser parser) throws IOException {
+        long start = System.nanoTime();
+        long result;
+        try (Reader in = new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8)) {
+            result = parser.parse(in);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %s %8.1f ms  %,12.0f rows/sec%n", label, seconds * 1000, rows / seconds);
+        return result;
+    }
+
+    // Each parser sums the length of the BITS_ID column so the work cannot be optimized away
+
+    private static long notifierSplit(Reader in) throws IOException {
+        BufferedReader br = new BufferedReader(in);
+        long sum = 0;
+        String line;
+        br.readLine();
+        while ((line = br.readLine()) != null) {
+            String[] parts = line.replaceAll("\"", "").split(",");
+            if (parts.length > 1) {
+                sum += parts[1].trim().length();
+            }
+        }
+        return sum;
+    }
+
+    private static long fetcherSplit(Reader in) throws IOException {
+        BufferedReader br = new BufferedReader(in);
+        long sum = 0;
+        String line;
+        br.readLine();
+        while ((line = br.readLine()) != null) {
+            String[] parts = line.split(",", -1);
+            for (int i = 0; i < parts.length; i++) {
+                String s = parts[i].trim();
+                if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+                    s = s.substring(1, s.length() - 1).trim();
+                }
+                parts[i] = s;
+            }
+            if (parts.length > 1) {
+                sum += parts[1].length();
+            }
+        }
+        return sum;
+    }
+
+    private static long dashboardSplit(Reader in) throws IOException {
+        BufferedReader br = new BufferedReader(in);
+        long sum = 0;
+        String line;
+        br.readLine();
+        while ((line = br.readLine()) != null) {
+            String[] parts = line.replace("\"", "").split(",");
+            if (parts.length > 1) {
+                sum += parts[1].trim().length();
+            }
+        }
+        return sum;
+    }
+
+    private static long csvReader(Reader in) throws IOException {
+        CsvReader reader = new CsvReader(in);
+        CsvRow row = new CsvRow();
+        long sum = 0;
+        reader.next(row);
+        while (reader.next(row)) {
+            if (row.size() > 1 && row.equalsIgnoreCase(1, "2024A7PS0001U")) {
+                sum++;
+            }
+            sum += row.size();
+        }
+        return sum;
+    }
+
+    private static long csvReaderToArray(Reader in) throws IOException {
+        CsvReader reader = new CsvReader(in);
+        CsvRow row = new CsvRow();
+        long sum = 0;
+        reader.next(row);
+        while (reader.next(row)) {
+            String[] parts = row.toArray();
+            if (parts.length > 1) {
+                sum += parts[1].trim().length();
+            }
+        }
+        return sum;
+    }
+
+    private static void generate(File csv, int rows) throws IOException {
+        String[] bloodTypes = { "A+", "A-", "B+", "B-", "O+", "O-", "AB+", "AB-" };
+        try (BufferedWriter out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8))) {
+            out.write("FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramID,BloodType,"
+                + "Allergies,ChronicIllnesses,InsuranceType,GuardianName,GuardianContact\r\n");
+            for (int i = 0; i < rows; i++) {
+                String id = String.format("2024A7PS%04dU", i % 10_000) + (i / 10_000);
+                boolean quoted = i % 4 == 0;
+                String q = quoted ? "\"" : "";
+                out.write(q + "Student " + i + q + "," + q + id + q + ",M,"
+                    + "f2024" + i + "@dubai.bits-pilani.ac.in,05" + (10_000_000 + i) + ",@student" + i + ","
+                    + bloodTypes[i % bloodTypes.length] + ","
+                    + (i % 10 == 0 ? "\"Peanuts, dust\"" : "None") + ",None,Basic,"
+                    + q + "Guardian " + i + q + ",+9715" + (20_000_000 + i) + "\r\n");
+            }
+        }
+    }
+}
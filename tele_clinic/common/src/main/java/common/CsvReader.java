@@ -0,0 +1,179 @@
+package common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Streaming RFC 4180 CSV parser shared by the bot backend and the desktop app.
+ * Handles quoted fields, doubled quotes inside them, delimiters and line
+ * breaks inside quoted fields, and LF, CRLF or bare CR line endings.
+ * Records are parsed straight from a char buffer into a caller-supplied
+ * {@link CsvRow}, with no regex and no per-row arrays.
+ *
+ * Malformed input is read leniently rather than rejected: a quote inside an
+ * unquoted field is kept as-is, text after a closing quote is appended to the
+ * field, and an unterminated quoted field runs to the end of the input.
+ */
+public final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long recordNumber;
+
+    public CsvReader(Reader in) {
+        this(in, ',');
+    }
+
+    public CsvReader(Reader in, char delimiter) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Invalid delimiter: " + delimiter);
+        }
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Parses a single line, e.g. one row located by a byte-level scan.
+     */
+    public static String[] parseLine(String line) {
+        try (CsvReader reader = new CsvReader(new StringReader(line))) {
+            CsvRow row = new CsvRow();
+            return reader.next(row) ? row.toArray() : new String[] { "" };
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringReader does not throw
+        }
+    }
+
+    /**
+     * Reads the next record into {@code row}, replacing its previous contents.
+     * An empty line is returned as a record with one empty field.
+     * @return false at end of input.
+     */
+    public boolean next(CsvRow row) throws IOException {
+        row.reset();
+        int c = read();
+        if (c < 0) {
+            return false;
+        }
+        recordNumber++;
+
+        while (true) {
+            row.startField();
+            if (c == '"') {
+                c = readQuoted(row);
+            }
+            if (c >= 0 && c != delimiter && c != '\n' && c != '\r') {
+                row.append((char) c);
+                c = readPlain(row);
+            }
+            row.endField();
+
+            if (c == delimiter) {
+                c = read();
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                pos++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Number of records returned so far (1-based number of the current record).
+     */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * Reads the body of a quoted field up to its closing quote and returns
+     * the character after it.
+     */
+    private int readQuoted(CsvRow row) throws IOException {
+        while (true) {
+            // Copy runs of plain characters without going through read()
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"') {
+                pos++;
+            }
+            row.append(buffer, start, pos - start);
+            int c = read();
+            if (c < 0) {
+                return c;
+            }
+            if (c != '"') {
+                row.append((char) c); // First character after a buffer refill
+                continue;
+            }
+            int next = read();
+            if (next != '"') {
+                return next;
+            }
+            row.append('"');
+        }
+    }
+
+    /**
+     * Copies the rest of an unquoted field and returns the character that
+     * ends it (delimiter, line break or -1).
+     */
+    private int readPlain(CsvRow row) throws IOException {
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == delimiter || c == '\n' || c == '\r') {
+                    break;
+                }
+                pos++;
+            }
+            row.append(buffer, start, pos - start);
+            if (pos < limit) {
+                return buffer[pos++];
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
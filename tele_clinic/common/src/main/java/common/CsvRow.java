@@ -0,0 +1,133 @@
+package common;
+
+import java.util.Arrays;
+
+/**
+ * One parsed CSV record, filled in place by {@link CsvReader#next(CsvRow)}.
+ * Field contents (already unquoted and unescaped) live back to back in a
+ * single char buffer that is reused for every row, so parsing allocates
+ * nothing once the buffers have grown to the widest row. Strings are only
+ * created when a caller asks for a field with {@link #get(int)}.
+ */
+public final class CsvRow {
+
+    private char[] chars = new char[256];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns field {@code index} as a new String.
+     */
+    public String get(int index) {
+        checkIndex(index);
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Returns field {@code index} with surrounding whitespace removed, or
+     * an empty string if the row has no such field.
+     */
+    public String getTrimmed(int index) {
+        if (index < 0 || index >= fieldCount) {
+            return "";
+        }
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && chars[start] <= ' ') start++;
+        while (end > start && chars[end - 1] <= ' ') end--;
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * Compares field {@code index}, ignoring surrounding whitespace and case,
+     * with {@code value} without creating a String.
+     */
+    public boolean equalsIgnoreCase(int index, String value) {
+        if (index < 0 || index >= fieldCount) {
+            return false;
+        }
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && chars[start] <= ' ') start++;
+        while (end > start && chars[end - 1] <= ' ') end--;
+        String trimmed = value.trim();
+        if (end - start != trimmed.length()) {
+            return false;
+        }
+        return regionEqualsIgnoreCase(start, trimmed);
+    }
+
+    /**
+     * Copies all fields into a new array.
+     */
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = get(i);
+        }
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    // --- Used by CsvReader while filling the row ---
+
+    void reset() {
+        length = 0;
+        fieldCount = 0;
+    }
+
+    void startField() {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = length;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    void append(char[] src, int offset, int count) {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+        }
+        System.arraycopy(src, offset, chars, length, count);
+        length += count;
+    }
+
+    void endField() {
+        ends[fieldCount++] = length;
+    }
+
+    private boolean regionEqualsIgnoreCase(int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char a = chars[start + i];
+            char b = value.charAt(i);
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)
+                    && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+        }
+    }
+}
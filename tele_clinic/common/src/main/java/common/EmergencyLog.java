@@ -0,0 +1,242 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Record framing for emergency_logs.txt, shared by the frontend writer and
+ * the Notifier. Each event is one line:
+ * <pre>
+ * &#64;sequence:length:crc32c:payload\n
+ * </pre>
+ * {@code sequence} (decimal) goes up by one per event, {@code length} is
+ * the payload's size in UTF-8 bytes, and {@code crc32c} (8 hex digits)
+ * covers the {@code sequence:length:} prefix and the payload. A line cut
+ * short by a crash, or damaged afterwards, fails the length or checksum
+ * test, so it is never mistaken for an event. Lines without the leading
+ * '@' were written before framing and are passed on as legacy entries.
+ */
+public final class EmergencyLog {
+
+    private static final byte FRAME_MARK = '@';
+    private static final int RECOVERY_WINDOW = 64 * 1024;
+
+    /**
+     * One complete line of the log.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final String payload;
+        private final boolean intact;
+
+        private Entry(long sequence, String payload, boolean intact) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.intact = intact;
+        }
+
+        /** The event's sequence number, or -1 for a legacy (unframed) line. */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /** The event text, or the raw line if the frame is damaged. */
+        public String getPayload() {
+            return payload;
+        }
+
+        /** False if the line is framed but fails its length or checksum test. */
+        public boolean isIntact() {
+            return intact;
+        }
+
+        public boolean isLegacy() {
+            return sequence < 0 && intact;
+        }
+    }
+
+    private EmergencyLog() {
+    }
+
+    /**
+     * Encodes one event as a framed line, terminator included. Line breaks
+     * in {@code payload} are replaced by spaces.
+     */
+    public static byte[] frame(long sequence, String payload) {
+        byte[] data = payload.replace('\r', ' ').replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+        byte[] prefix = (sequence + ":" + data.length + ":").getBytes(StandardCharsets.US_ASCII);
+        CRC32C crc = new CRC32C();
+        crc.update(prefix);
+        crc.update(data);
+        byte[] checksum = String.format("%08x:", crc.getValue()).getBytes(StandardCharsets.US_ASCII);
+
+        ByteBuffer line = ByteBuffer.allocate(1 + prefix.length + checksum.length + data.length + 1);
+        line.put(FRAME_MARK).put(prefix).put(checksum).put(data).put((byte) '\n');
+        return line.array();
+    }
+
+    /**
+     * Passes each complete line from {@code from} to the end of the file to
+     * {@code consumer}. A trailing line without its terminator (still being
+     * written, or torn) is left for the next call.
+     * @return The offset just past the last complete line.
+     */
+    public static long read(File file, long from, Consumer<Entry> consumer) throws IOException {
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long size = raf.length();
+            if (size <= from) {
+                return from;
+            }
+            bytes = new byte[(int) Math.min(Integer.MAX_VALUE - 8, size - from)];
+            raf.seek(from);
+            raf.readFully(bytes);
+        }
+
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                if (i > lineStart) {
+                    consumer.accept(parse(bytes, lineStart, i));
+                }
+                lineStart = i + 1;
+            }
+        }
+        return from + lineStart;
+    }
+
+    /**
+     * Startup recovery for the writer: truncates a torn tail (an unfinished
+     * last line and any damaged frames right before it) and returns the last
+     * intact sequence number, so numbering continues from there. Only the
+     * end of the file is read, however long it is.
+     * @return The last sequence number, or -1 if the file holds no framed event.
+     */
+    public static long recover(File file) throws IOException {
+        if (!file.exists()) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            for (long window = RECOVERY_WINDOW; ; window *= 2) {
+                long start = Math.max(0, size - window);
+                byte[] bytes = new byte[(int) (size - start)];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+                }
+
+                // Everything after the last line break is an unfinished line
+                int validEnd = lastIndexOf(bytes, bytes.length) + 1;
+                boolean truncating = true;
+                long lastSequence = -1;
+                int lineEnd = validEnd;
+                while (lineEnd > 0) {
+                    int lineStart = lastIndexOf(bytes, lineEnd - 1) + 1;
+                    if (lineStart == 0 && start > 0) {
+                        break; // The line may begin before the window
+                    }
+                    Entry entry = lineEnd - 1 > lineStart ? parse(bytes, lineStart, lineEnd - 1) : null;
+                    if (entry != null && entry.isIntact() && !entry.isLegacy()) {
+                        lastSequence = entry.getSequence();
+                        break;
+                    }
+                    if (entry != null && !entry.isIntact()) {
+                        if (truncating) {
+                            validEnd = lineStart;
+                        }
+                    } else {
+                        truncating = false; // Keep legacy and blank lines, and all before them
+                    }
+                    lineEnd = lineStart;
+                }
+
+                if (lastSequence >= 0 || start == 0) {
+                    if (start + validEnd < size) {
+                        channel.truncate(start + validEnd);
+                        channel.force(true);
+                    }
+                    return lastSequence;
+                }
+            }
+        }
+    }
+
+    /**
+     * Index of the last '\n' before {@code end}, or -1.
+     */
+    private static int lastIndexOf(byte[] bytes, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the line in {@code bytes[start, end)}, terminator excluded.
+     * Also used for events received over {@link EmergencySocket}, which
+     * carries the same lines.
+     */
+    public static Entry parse(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        String raw = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        if (end == start || bytes[start] != FRAME_MARK) {
+            return new Entry(-1, raw, true);
+        }
+
+        int sequenceEnd = indexOf(bytes, start + 1, end);
+        int lengthEnd = indexOf(bytes, sequenceEnd + 1, end);
+        int crcEnd = lengthEnd + 9;
+        long sequence = parseNumber(bytes, start + 1, sequenceEnd, 10);
+        long length = parseNumber(bytes, sequenceEnd + 1, lengthEnd, 10);
+        if (sequence < 0 || length < 0 || crcEnd >= end || bytes[crcEnd] != ':' || end - (crcEnd + 1) != length) {
+            return new Entry(-1, raw, false);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, start + 1, lengthEnd + 1 - (start + 1));
+        crc.update(bytes, crcEnd + 1, (int) length);
+        if (parseNumber(bytes, lengthEnd + 1, crcEnd, 16) != crc.getValue()) {
+            return new Entry(-1, raw, false);
+        }
+        return new Entry(sequence, new String(bytes, crcEnd + 1, (int) length, StandardCharsets.UTF_8), true);
+    }
+
+    private static int indexOf(byte[] bytes, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (bytes[i] == ':') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Parses an unsigned number in {@code bytes[start, end)}.
+     * @return The value, or -1 if the range is empty, too long or not a number.
+     */
+    private static long parseNumber(byte[] bytes, int start, int end, int radix) {
+        if (end <= start || end - start > 16) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(bytes[i], radix);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value;
+    }
+}
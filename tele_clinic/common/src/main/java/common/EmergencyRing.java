@@ -0,0 +1,250 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Single-producer/single-consumer ring buffer in a memory-mapped file,
+ * through which the frontend hands emergency events straight to the
+ * Notifier instead of waiting for the file watcher. emergency_logs.txt
+ * stays the record of every event; the ring only carries a copy of each
+ * one, and an event that does not fit (the Notifier is down or behind) is
+ * simply left to the log.
+ *
+ * File layout (native byte order):
+ * <pre>
+ * 0    magic(int) version(int) capacity(int)
+ * 64   write position(long)  - total bytes published, set by the producer
+ * 128  read position(long)   - total bytes consumed, set by the consumer
+ * 256  capacity bytes of records
+ * </pre>
+ * The positions sit on separate cache lines and are only ever increased;
+ * each side publishes its own with a release store and reads the other's
+ * with an acquire load, which orders the record bytes across processes as
+ * well as threads. A record is {@code length(int) sequence(long) payload
+ * (UTF-8)}, padded to 8 bytes; a record that would run past the end of the
+ * buffer is preceded by a padding record (length -1) and starts again at
+ * the beginning.
+ *
+ * One process at a time may produce and one may consume: each role takes a
+ * lock on the file when the ring is opened for it. Within the process, each
+ * side must be used by one thread at a time.
+ */
+public final class EmergencyRing implements AutoCloseable {
+
+    private static final int MAGIC = 0x52494e47; // "RING"
+    private static final int VERSION = 1;
+    private static final int WRITE_POSITION = 64;
+    private static final int READ_POSITION = 128;
+    private static final int DATA_OFFSET = 256;
+    private static final int RECORD_HEADER = 12;
+    private static final int PADDING = -1;
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    // Lock regions past any real data, one per role plus one for setting up the header
+    private static final long INIT_LOCK = Long.MAX_VALUE - 3;
+    private static final long PRODUCER_LOCK = Long.MAX_VALUE - 2;
+    private static final long CONSUMER_LOCK = Long.MAX_VALUE - 1;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Receives the events taken from the ring.
+     */
+    public interface EventHandler {
+        void onEvent(long sequence, String payload);
+    }
+
+    private final FileChannel channel;
+    private final FileLock roleLock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    // The owning side's own position, kept locally; the shared copy is only written
+    private long position;
+
+    private EmergencyRing(FileChannel channel, FileLock roleLock, MappedByteBuffer buffer, int capacity, long position) {
+        this.channel = channel;
+        this.roleLock = roleLock;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.position = position;
+    }
+
+    /**
+     * The ring that goes with an emergency log: {@code name.ring} beside it.
+     */
+    public static File fileFor(File logFile) {
+        File absolute = logFile.getAbsoluteFile();
+        String name = absolute.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(absolute.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".ring");
+    }
+
+    /**
+     * Opens (creating if needed) the ring for publishing events.
+     * @return The ring, or null if another process is already publishing to it.
+     */
+    public static EmergencyRing openProducer(File file) throws IOException {
+        return open(file, PRODUCER_LOCK, false);
+    }
+
+    /**
+     * Opens (creating if needed) the ring for taking events. Events
+     * published before this call are skipped, so a restarted consumer does
+     * not replay old ones.
+     * @return The ring, or null if another process is already consuming it.
+     */
+    public static EmergencyRing openConsumer(File file) throws IOException {
+        return open(file, CONSUMER_LOCK, true);
+    }
+
+    @SuppressWarnings("try")
+    private static EmergencyRing open(File file, long roleRegion, boolean consumer) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock roleLock;
+            try {
+                roleLock = channel.tryLock(roleRegion, 1, false);
+            } catch (OverlappingFileLockException e) {
+                roleLock = null; // Held by this process already
+            }
+            if (roleLock == null) {
+                channel.close();
+                return null;
+            }
+
+            int capacity;
+            try (FileLock init = channel.lock(INIT_LOCK, 1, false)) {
+                capacity = initialize(channel);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+            buffer.order(ByteOrder.nativeOrder());
+
+            long position = (long) LONG.getAcquire(buffer, WRITE_POSITION);
+            if (consumer) {
+                LONG.setRelease(buffer, READ_POSITION, position);
+            }
+            return new EmergencyRing(channel, roleLock, buffer, capacity, position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the header of a new (or unreadable) ring file, with the
+     * capacity from {@code -Dclinic.ring.bytes} rounded up to a power of
+     * two. An existing ring keeps its capacity.
+     * @return The ring's capacity.
+     */
+    private static int initialize(FileChannel channel) throws IOException {
+        if (channel.size() >= DATA_OFFSET) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, DATA_OFFSET);
+            header.order(ByteOrder.nativeOrder());
+            int capacity = header.getInt(8);
+            if (header.getInt(0) == MAGIC && header.getInt(4) == VERSION && Integer.bitCount(capacity) == 1
+                    && channel.size() >= DATA_OFFSET + (long) capacity) {
+                return capacity;
+            }
+        }
+        int requested = Math.max(1024, Integer.getInteger("clinic.ring.bytes", DEFAULT_CAPACITY));
+        int capacity = Integer.highestOneBit(requested - 1) << 1;
+        channel.truncate(0);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+        header.order(ByteOrder.nativeOrder());
+        header.putInt(8, capacity);
+        header.putInt(4, VERSION);
+        header.putLong(WRITE_POSITION, 0);
+        header.putLong(READ_POSITION, 0);
+        header.putInt(0, MAGIC);
+        header.force();
+        return capacity;
+    }
+
+    /**
+     * Publishes one event. Producer only.
+     * @return false if the ring has no room for it (the consumer is gone
+     *         or behind) or it is larger than the ring.
+     */
+    public boolean offer(long sequence, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        int size = align(RECORD_HEADER + bytes.length);
+        int index = (int) (position & mask);
+        int padding = index + size > capacity ? capacity - index : 0;
+
+        long read = (long) LONG.getAcquire(buffer, READ_POSITION);
+        if (size > capacity || position + padding + size - read > capacity) {
+            return false;
+        }
+        if (padding > 0) {
+            buffer.putInt(DATA_OFFSET + index, PADDING);
+            index = 0;
+        }
+        buffer.putInt(DATA_OFFSET + index, bytes.length);
+        buffer.putLong(DATA_OFFSET + index + 4, sequence);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(DATA_OFFSET + index + RECORD_HEADER + i, bytes[i]);
+        }
+        position += padding + size;
+        LONG.setRelease(buffer, WRITE_POSITION, position);
+        return true;
+    }
+
+    /**
+     * Passes every event published since the last call to {@code handler}.
+     * Consumer only.
+     * @return The number of events taken.
+     */
+    public int poll(EventHandler handler) {
+        long write = (long) LONG.getAcquire(buffer, WRITE_POSITION);
+        int taken = 0;
+        while (position < write) {
+            int index = (int) (position & mask);
+            int length = buffer.getInt(DATA_OFFSET + index);
+            if (length == PADDING) {
+                position += capacity - index;
+                continue;
+            }
+            long sequence = buffer.getLong(DATA_OFFSET + index + 4);
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(DATA_OFFSET + index + RECORD_HEADER + i);
+            }
+            position += align(RECORD_HEADER + length);
+            // Free the space before handling, which may be slow
+            LONG.setRelease(buffer, READ_POSITION, position);
+            handler.onEvent(sequence, new String(bytes, StandardCharsets.UTF_8));
+            taken++;
+        }
+        return taken;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            roleLock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
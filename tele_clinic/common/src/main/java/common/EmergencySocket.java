@@ -0,0 +1,215 @@
+package common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Local (Unix domain) socket over which the frontend pushes each emergency
+ * event straight to the Notifier, so alerting does not depend on the file
+ * watcher. The socket file sits beside emergency_logs.txt
+ * ({@code name.sock}); events travel as the same framed lines as in the
+ * log ({@link EmergencyLog#frame}).
+ *
+ * Sending is best effort and never blocks: with no Notifier listening, or
+ * one that is not reading, the event is only in the log, which the
+ * Notifier reads as before.
+ */
+public final class EmergencySocket {
+
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private EmergencySocket() {
+    }
+
+    /**
+     * The socket that goes with an emergency log, beside it. The path is
+     * left relative if the log's is, as socket paths are limited to about
+     * 100 characters.
+     */
+    public static Path pathFor(File logFile) {
+        String name = logFile.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(logFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".sock").toPath();
+    }
+
+    /**
+     * The frontend's end: connects on first use and again after the
+     * Notifier restarts.
+     */
+    public static final class Sender implements Closeable {
+        private final Path path;
+        private SocketChannel channel;
+
+        public Sender(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Sends one event.
+         * @return false if no Notifier is listening or it is not keeping up.
+         */
+        public synchronized boolean send(long sequence, String payload) {
+            byte[] line = EmergencyLog.frame(sequence, payload);
+            // A connection to a Notifier that has since restarted fails on the first write
+            for (int attempt = 0; attempt < 2; attempt++) {
+                boolean reused = channel != null;
+                try {
+                    if (channel == null) {
+                        channel = SocketChannel.open(UnixDomainSocketAddress.of(path));
+                        channel.configureBlocking(false);
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(line);
+                    channel.write(bytes);
+                    if (bytes.hasRemaining()) {
+                        close(); // The listener drops the partial line with the connection
+                        return false;
+                    }
+                    return true;
+                } catch (IOException e) {
+                    close();
+                    if (!reused) {
+                        return false;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing more to send through it
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * The Notifier's end: accepts connections on a background thread and
+     * passes each complete line received, parsed, to the consumer (from
+     * one thread per connection).
+     */
+    public static final class Listener implements Closeable {
+        private final Path path;
+        private final ServerSocketChannel server;
+        private final Consumer<EmergencyLog.Entry> consumer;
+        private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+        private Listener(Path path, ServerSocketChannel server, Consumer<EmergencyLog.Entry> consumer) {
+            this.path = path;
+            this.server = server;
+            this.consumer = consumer;
+        }
+
+        /**
+         * Starts listening at {@code path}, replacing a socket file left by
+         * a Notifier that did not shut down cleanly.
+         * @return The listener, or null if another process is listening there.
+         */
+        @SuppressWarnings("try")
+        public static Listener start(Path path, Consumer<EmergencyLog.Entry> consumer) throws IOException {
+            UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+            if (Files.exists(path)) {
+                try (SocketChannel probe = SocketChannel.open(address)) {
+                    return null;
+                } catch (IOException e) {
+                    Files.delete(path); // Stale
+                }
+            }
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                server.bind(address);
+            } catch (IOException e) {
+                server.close();
+                throw e;
+            }
+            Listener listener = new Listener(path, server, consumer);
+            Thread acceptor = new Thread(listener::accept, "EmergencySocketListener");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return listener;
+        }
+
+        private void accept() {
+            while (server.isOpen()) {
+                try {
+                    SocketChannel connection = server.accept();
+                    connections.add(connection);
+                    Thread reader = new Thread(() -> read(connection), "EmergencySocketConnection");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    if (server.isOpen()) {
+                        System.err.println("[EmergencySocket] ✗ Accept failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads lines until the sender goes away; a line cut off by a
+         * closed connection is dropped.
+         */
+        private void read(SocketChannel connection) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            byte[] line = new byte[256];
+            int length = 0;
+            try (SocketChannel channel = connection) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b == '\n') {
+                            if (length > 0) {
+                                consumer.accept(EmergencyLog.parse(line, 0, length));
+                            }
+                            length = 0;
+                        } else {
+                            if (length == line.length) {
+                                if (length >= MAX_LINE_BYTES) {
+                                    return; // Not one of our lines
+                                }
+                                line = Arrays.copyOf(line, length * 2);
+                            }
+                            line[length++] = b;
+                        }
+                    }
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // The sender went away mid-read, or the listener was closed
+            } finally {
+                connections.remove(connection);
+            }
+        }
+
+        /**
+         * Stops listening and drops open connections, so senders fall back
+         * to the log.
+         */
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (SocketChannel connection : connections) {
+                connection.close();
+            }
+            Files.deleteIfExists(path);
+        }
+    }
+}
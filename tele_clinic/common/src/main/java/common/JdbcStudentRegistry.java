@@ -0,0 +1,115 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Student registry kept in the {@code students} table of the clinic's
+ * embedded database (the frontend's JDBC repository backend), for the
+ * Notifier and the frontend alike. Rows come back with the fields in
+ * medical_registrations.csv order, like the other registries.
+ *
+ * Only plain JDBC is used; the database driver (e.g. H2) has to be on the
+ * classpath.
+ */
+public final class JdbcStudentRegistry implements StudentRegistry, AutoCloseable {
+
+    /** The table's columns, in medical_registrations.csv order; bits_key (the normalized ID) is the key. */
+    public static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+        "full_name", "bits_id", "gender", "email", "mobile_no", "telegram_no", "blood_type",
+        "allergies", "chronic_illnesses", "insurance_type", "guardian_name", "guardian_contact"));
+
+    private final Connection connection;
+    private final boolean ownsConnection;
+    private PreparedStatement findStatement;
+
+    /**
+     * Reads through an already open connection, which the caller keeps
+     * and closes; calls must not overlap other use of it.
+     */
+    public JdbcStudentRegistry(Connection connection) {
+        this(connection, false);
+    }
+
+    private JdbcStudentRegistry(Connection connection, boolean ownsConnection) {
+        this.connection = connection;
+        this.ownsConnection = ownsConnection;
+    }
+
+    /**
+     * Opens its own connection to the database at {@code url}.
+     */
+    public static JdbcStudentRegistry open(String url) throws SQLException {
+        return new JdbcStudentRegistry(DriverManager.getConnection(url), true);
+    }
+
+    /**
+     * The lookup key for a BITS ID: trimmed and upper-cased.
+     */
+    public static String key(String bitsId) {
+        return bitsId.trim().toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public synchronized String[] find(String bitsId) {
+        if (bitsId == null) {
+            return null;
+        }
+        try {
+            if (findStatement == null) {
+                findStatement = connection.prepareStatement(
+                    "SELECT " + String.join(", ", COLUMNS) + " FROM students WHERE bits_key = ?");
+            }
+            findStatement.setString(1, key(bitsId));
+            try (ResultSet rs = findStatement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                String[] fields = new String[COLUMNS.size()];
+                for (int i = 0; i < fields.length; i++) {
+                    String value = rs.getString(i + 1);
+                    fields[i] = value == null ? "" : value;
+                }
+                return fields;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Student lookup failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        try (PreparedStatement count = connection.prepareStatement("SELECT COUNT(*) FROM students");
+             ResultSet rs = count.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Student count failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Always current: every lookup queries the table.
+     */
+    @Override
+    public boolean isCurrent() {
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (findStatement != null) {
+            findStatement.close();
+            findStatement = null;
+        }
+        if (ownsConnection) {
+            connection.close();
+        }
+    }
+}
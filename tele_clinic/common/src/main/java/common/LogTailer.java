@@ -0,0 +1,153 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Follows a growing text file line by line, for readers of messages.txt.
+ * Each call to {@link #read} takes the bytes appended since the last one
+ * through a {@link FileChannel} into one reused direct buffer, decodes
+ * every complete line as UTF-8 (without the line break, {@code \r\n} or
+ * {@code \n}) and passes it to the consumer. A last line without its line
+ * break is still being written and is left for the next call.
+ *
+ * Usable directly as a {@link SegmentedLog.SegmentReader}. Besides the
+ * segments the log starts itself, two other changes are noticed:
+ * <ul>
+ * <li>the file was truncated (shorter than where the last read ended, or
+ *     than {@code from}): it is read again from the start</li>
+ * <li>the file was replaced by a new one of the same name (rotated by
+ *     renaming): the new file is read from the start</li>
+ * </ul>
+ *
+ * Not thread-safe; each reading thread needs its own tailer.
+ */
+public final class LogTailer implements SegmentedLog.SegmentReader {
+
+    private static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    private final Consumer<String> consumer;
+    private final ByteBuffer buffer;
+
+    // The line being put together across buffer refills
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean skipping;
+
+    // The file last read, as it was then, and where that read ended
+    private File file;
+    private Object fileIdentity;
+    private long end;
+
+    public LogTailer(Consumer<String> consumer) {
+        this(consumer, DEFAULT_BUFFER_BYTES);
+    }
+
+    public LogTailer(Consumer<String> consumer, int bufferBytes) {
+        this.consumer = consumer;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * Passes each complete line from {@code from} to the end of
+     * {@code file} to the consumer.
+     * @return The offset just past the last complete line, where the next
+     *         read should start.
+     */
+    @Override
+    public long read(File file, long from) throws IOException {
+        if (!file.exists()) {
+            return from;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            long size = channel.size();
+            Object identity = identity(file);
+            boolean sameFile = file.equals(this.file);
+            if (from > size
+                    || sameFile && !Objects.equals(identity, fileIdentity)
+                    || sameFile && size < end) {
+                from = 0;
+            }
+            this.file = file;
+            this.fileIdentity = identity;
+            this.end = scan(channel, from, size);
+            return this.end;
+        }
+    }
+
+    private long scan(FileChannel channel, long from, long size) throws IOException {
+        lineLength = 0;
+        skipping = false;
+        long position = from;
+        long lineStart = from;
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int chunkStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    append(chunkStart, i);
+                    publish();
+                    chunkStart = i + 1;
+                    lineStart = position + i + 1;
+                }
+            }
+            append(chunkStart, read);
+            position += read;
+        }
+        return lineStart;
+    }
+
+    /**
+     * Adds bytes {@code [start, stop)} of the buffer to the current line.
+     */
+    private void append(int start, int stop) {
+        int count = stop - start;
+        if (skipping || count == 0) {
+            return;
+        }
+        if (lineLength + count > MAX_LINE_BYTES) {
+            skipping = true; // Not a line of ours; drop it up to its line break
+            return;
+        }
+        if (lineLength + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + count));
+        }
+        buffer.get(start, line, lineLength, count);
+        lineLength += count;
+    }
+
+    private void publish() {
+        if (skipping) {
+            System.err.println("[LogTailer] ✗ Skipped a line over " + MAX_LINE_BYTES + " bytes in " + file.getName());
+        } else {
+            int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+            consumer.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+        }
+        lineLength = 0;
+        skipping = false;
+    }
+
+    /**
+     * What tells this file apart from a later one of the same name: the
+     * file key (inode) where there is one, otherwise the creation time.
+     */
+    private static Object identity(File file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        return key != null ? key : attributes.creationTime();
+    }
+}
@@ -0,0 +1,359 @@
+package common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Registry rows stored outside the Java heap, for processes that host very
+ * large or several campuses' registries. Rows are encoded into direct
+ * ByteBuffer slabs and found through an open-addressing hash table that is
+ * itself a direct buffer, so the heap holds a handful of objects however many
+ * students are loaded and the GC never has to trace them. Fields are decoded
+ * to Strings only when a caller reads them.
+ *
+ * Record layout inside a slab (big-endian):
+ * <pre>
+ * keyLength(u16) key(UTF-8, normalized BITS ID) fieldCount(u8)
+ * fieldCount x fieldEnd(int, relative to the start of the field data)
+ * field data (UTF-8)
+ * </pre>
+ * A hash slot holds the record address (slab index and offset, plus one so
+ * that zero means empty) and the key's hash.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size.
+ */
+public final class OffHeapRecordStore implements StudentRegistry {
+
+    private static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+    private static final int SLOT_BYTES = 16; // address(long) hash(int) unused(int)
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer table;
+    private int mask;
+    private int count;
+
+    private final List<File> sources = new ArrayList<>();
+    private final List<long[]> sourceStamps = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public OffHeapRecordStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapRecordStore(int slabSize) {
+        this.slabSize = slabSize;
+        this.table = ByteBuffer.allocateDirect(INITIAL_CAPACITY * SLOT_BYTES);
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Loads one registry CSV into a new store.
+     */
+    public static OffHeapRecordStore load(File csvFile) throws IOException {
+        OffHeapRecordStore store = new OffHeapRecordStore();
+        store.addCsv(csvFile);
+        return store;
+    }
+
+    /**
+     * Adds every row of a registry CSV (e.g. another campus) to the store.
+     * As elsewhere, the first row for a BITS ID wins. The file is remembered
+     * for {@link #isCurrent()}.
+     * @return The number of rows added.
+     */
+    public int addCsv(File csvFile) throws IOException {
+        long length = csvFile.length();
+        long modified = csvFile.lastModified();
+        int added = 0;
+        try (CsvReader reader = new CsvReader(
+                new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
+            CsvRow row = new CsvRow();
+            reader.next(row); // Skip header
+            while (reader.next(row)) {
+                int columns = row.size();
+                if (columns <= RegistrySnapshot.BITS_ID_INDEX) {
+                    continue;
+                }
+                String[] fields = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                    fields[i] = row.getTrimmed(i);
+                }
+                if (put(fields[RegistrySnapshot.BITS_ID_INDEX], fields)) {
+                    added++;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            sources.add(csvFile);
+            sourceStamps.add(new long[] { length, modified });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Stores a row under a BITS ID unless the ID is already present.
+     * @return true if the row was added.
+     */
+    public boolean put(String bitsId, String[] fields) throws IOException {
+        if (fields.length > 0xFF) {
+            throw new IOException("Row has more than 255 columns");
+        }
+        byte[] key = RegistrySnapshot.normalize(bitsId).getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF) {
+            throw new IOException("BITS ID longer than 65535 bytes");
+        }
+        byte[][] encoded = new byte[fields.length][];
+        long size = 2 + key.length + 1 + 4L * fields.length;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = (fields[i] == null ? "" : fields[i]).getBytes(StandardCharsets.UTF_8);
+            size += encoded[i].length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Row too large for the off-heap store");
+        }
+        int hash = hash(key);
+
+        lock.writeLock().lock();
+        try {
+            if (findSlot(key, hash) >= 0) {
+                return false;
+            }
+            if ((count + 1) * 2 > mask + 1) {
+                resize();
+            }
+            long address = append(key, encoded, (int) size);
+            insert(address, hash);
+            count++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a view of the row for a BITS ID whose fields are decoded on
+     * access, or null if the ID is not present.
+     */
+    public Record get(String bitsId) {
+        byte[] key = RegistrySnapshot.normalize(bitsId).getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            long address = table.getLong(slot * SLOT_BYTES) - 1;
+            return new Record(slabs.get((int) (address >>> 32)), (int) address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String[] find(String bitsId) {
+        Record record = get(bitsId);
+        return record == null ? null : record.fields();
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Direct memory held by the slabs and the hash table.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = table.capacity();
+            for (ByteBuffer slab : slabs) {
+                bytes += slab.capacity();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true while every CSV loaded into the store has the length and
+     * modification time it had when it was read.
+     */
+    @Override
+    public boolean isCurrent() {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                File file = sources.get(i);
+                long[] stamp = sourceStamps.get(i);
+                if (file.length() != stamp[0] || file.lastModified() != stamp[1]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read-only view of one stored row. Holds a reference to its slab, so
+     * it stays valid for as long as the caller keeps it.
+     */
+    public static final class Record {
+        private final ByteBuffer slab;
+        private final int offset;
+
+        private Record(ByteBuffer slab, int offset) {
+            this.slab = slab;
+            this.offset = offset;
+        }
+
+        public int fieldCount() {
+            return slab.get(fieldCountPosition()) & 0xFF;
+        }
+
+        /**
+         * Decodes field {@code index}.
+         */
+        public String field(int index) {
+            int countPos = fieldCountPosition();
+            int fieldCount = slab.get(countPos) & 0xFF;
+            if (index < 0 || index >= fieldCount) {
+                throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+            }
+            int ends = countPos + 1;
+            int data = ends + 4 * fieldCount;
+            int start = index == 0 ? 0 : slab.getInt(ends + 4 * (index - 1));
+            int end = slab.getInt(ends + 4 * index);
+            return decode(slab, data + start, end - start);
+        }
+
+        public String[] fields() {
+            String[] fields = new String[fieldCount()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = field(i);
+            }
+            return fields;
+        }
+
+        private int fieldCountPosition() {
+            return offset + 2 + (slab.getShort(offset) & 0xFFFF);
+        }
+    }
+
+    private int findSlot(byte[] key, int hash) {
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long stored = table.getLong(slot * SLOT_BYTES);
+            if (stored == 0) {
+                return -1;
+            }
+            if (table.getInt(slot * SLOT_BYTES + 8) == hash && keyEquals(stored - 1, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long address, int hash) {
+        int slot = hash & mask;
+        while (table.getLong(slot * SLOT_BYTES) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.putLong(slot * SLOT_BYTES, address + 1);
+        table.putInt(slot * SLOT_BYTES + 8, hash);
+    }
+
+    private void resize() {
+        ByteBuffer old = table;
+        int oldCapacity = mask + 1;
+        int capacity = oldCapacity * 2;
+        if ((long) capacity * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap store is full");
+        }
+        table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        mask = capacity - 1;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long stored = old.getLong(slot * SLOT_BYTES);
+            if (stored != 0) {
+                insert(stored - 1, old.getInt(slot * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    /**
+     * Appends an encoded record to the current slab, starting a new slab
+     * (or a dedicated one for an oversized record) when it does not fit.
+     */
+    private long append(byte[] key, byte[][] fields, int size) {
+        ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+        if (slab == null || slab.remaining() < size) {
+            slab = ByteBuffer.allocateDirect(Math.max(slabSize, size));
+            slabs.add(slab);
+        }
+        int offset = slab.position();
+        slab.putShort((short) key.length);
+        slab.put(key);
+        slab.put((byte) fields.length);
+        int end = 0;
+        for (byte[] field : fields) {
+            end += field.length;
+            slab.putInt(end);
+        }
+        for (byte[] field : fields) {
+            slab.put(field);
+        }
+        return ((long) (slabs.size() - 1) << 32) | offset;
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        int offset = (int) address;
+        if ((slab.getShort(offset) & 0xFFFF) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(offset + 2 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer slab, int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = slab.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 1;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,357 @@
+package common;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of medical_registrations.csv.
+ * The CSV stays the source of truth; the snapshot is a read-optimized copy
+ * that is memory-mapped on startup and searched in place.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header:  magic(int) version(int) csvLength(long) csvModified(long) csvCrc32(long) recordCount(int)
+ * table:   recordCount x recordOffset(int), sorted by BITS ID
+ * records: keyLength(u16) key(UTF-8, normalized BITS ID) fieldCount(u8)
+ *          fieldCount x [fieldLength(u16) field(UTF-8)]
+ * </pre>
+ * A snapshot whose stored length and modification time match the CSV is
+ * used as is. Otherwise the CSV's CRC32 decides: if it still matches (the
+ * file was only touched or copied) the snapshot is kept, else it is stale
+ * and is rebuilt on open.
+ */
+public final class RegistrySnapshot implements StudentRegistry {
+
+    /** Column holding the BITS ID in medical_registrations.csv. */
+    public static final int BITS_ID_INDEX = 1;
+
+    private static final int MAGIC = 0x54435253; // "TCRS"
+    private static final int VERSION = 3; // 2: fields parsed as RFC 4180 CSV; 3: CSV modification time kept
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+    private static final int MODIFIED_OFFSET = 16;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final long CHECKSUM_WINDOW = 64L * 1024 * 1024;
+
+    private final File csvFile;
+    private final long csvLength;
+    private final long csvModified;
+    private final ByteBuffer buffer;
+    private final int recordCount;
+
+    private RegistrySnapshot(File csvFile, long csvLength, long csvModified, ByteBuffer buffer, int recordCount) {
+        this.csvFile = csvFile;
+        this.csvLength = csvLength;
+        this.csvModified = csvModified;
+        this.buffer = buffer;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Default snapshot location: next to the CSV with a .snapshot extension.
+     */
+    public static File snapshotFileFor(File csvFile) {
+        String name = csvFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csvFile.getAbsoluteFile().getParentFile(), base + ".snapshot");
+    }
+
+    /**
+     * Opens the snapshot for {@code csvFile}, rebuilding it first if it is
+     * missing or does not match the CSV. The CSV is only read for its
+     * checksum when its length or modification time has changed.
+     */
+    public static RegistrySnapshot open(File csvFile) throws IOException {
+        File snapshotFile = snapshotFileFor(csvFile);
+        long modified = csvFile.lastModified();
+        long length = csvFile.length();
+
+        RegistrySnapshot snapshot = map(csvFile, snapshotFile, length, modified, null);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long checksum = checksum(csvFile);
+        snapshot = map(csvFile, snapshotFile, length, modified, checksum);
+        if (snapshot != null) {
+            updateModified(snapshotFile, modified);
+            return snapshot;
+        }
+
+        File written = write(csvFile, snapshotFile, length, modified, checksum);
+        snapshot = map(csvFile, written, length, modified, checksum);
+        if (snapshot == null) {
+            throw new IOException("Snapshot rebuilt but failed validation: " + written);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns true while the CSV has the same length and modification time
+     * it had when this snapshot was opened.
+     */
+    @Override
+    public boolean isCurrent() {
+        return csvFile.length() == csvLength && csvFile.lastModified() == csvModified;
+    }
+
+    @Override
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Binary-searches the offset table for a BITS ID (case-insensitive).
+     * @return The row's unquoted, trimmed fields, or null if not present.
+     */
+    @Override
+    public String[] find(String bitsId) {
+        byte[] target = normalize(bitsId).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer view = buffer.duplicate();
+
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = view.getInt(HEADER_SIZE + mid * 4);
+            int cmp = compareKey(view, offset, target);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return decodeFields(view, offset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Normalizes a BITS ID for comparison: trimmed and upper-cased.
+     */
+    public static String normalize(String bitsId) {
+        return bitsId == null ? "" : bitsId.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static int compareKey(ByteBuffer view, int offset, byte[] target) {
+        int keyLength = view.getShort(offset) & 0xFFFF;
+        int keyStart = offset + 2;
+        int n = Math.min(keyLength, target.length);
+        for (int i = 0; i < n; i++) {
+            int a = view.get(keyStart + i) & 0xFF;
+            int b = target[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return keyLength - target.length;
+    }
+
+    private static String[] decodeFields(ByteBuffer view, int offset) {
+        int pos = offset + 2 + (view.getShort(offset) & 0xFFFF);
+        int fieldCount = view.get(pos) & 0xFF;
+        pos++;
+
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int length = view.getShort(pos) & 0xFFFF;
+            pos += 2;
+            byte[] bytes = new byte[length];
+            view.position(pos);
+            view.get(bytes);
+            fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            pos += length;
+        }
+        return fields;
+    }
+
+    /**
+     * Maps and validates a snapshot file. Returns null if it is missing,
+     * corrupt or was built from a different version of the CSV: one with
+     * another length, or another checksum (or, if {@code checksum} is null,
+     * another modification time).
+     */
+    private static RegistrySnapshot map(File csvFile, File snapshotFile, long csvLength, long csvModified,
+            Long checksum) throws IOException {
+        if (!snapshotFile.isFile() || snapshotFile.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION
+                    || buf.getLong(8) != csvLength
+                    || (checksum == null ? buf.getLong(MODIFIED_OFFSET) != csvModified : buf.getLong(24) != checksum)) {
+                return null;
+            }
+            int count = buf.getInt(32);
+            if (count < 0 || HEADER_SIZE + (long) count * 4 > buf.capacity()) {
+                return null;
+            }
+            return new RegistrySnapshot(csvFile, csvLength, csvModified, buf, count);
+        }
+    }
+
+    /**
+     * Records the CSV's new modification time in a snapshot whose checksum
+     * still matches, so the next open need not read the CSV again. Best
+     * effort: if the snapshot cannot be written, that next open checks the
+     * checksum once more.
+     */
+    private static void updateModified(File snapshotFile, long csvModified) {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer modified = ByteBuffer.allocate(8).putLong(0, csvModified);
+            channel.write(modified, MODIFIED_OFFSET);
+        } catch (IOException e) {
+            // Left as it was
+        }
+    }
+
+    /**
+     * CRC32 of the whole CSV, read through a memory mapping.
+     */
+    static long checksum(File csvFile) throws IOException {
+        CRC32 crc = new CRC32();
+        if (!csvFile.isFile()) {
+            return crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += CHECKSUM_WINDOW) {
+                long length = Math.min(CHECKSUM_WINDOW, size - pos);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, length));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Parses the CSV and writes a fresh snapshot. The file is written under a
+     * temporary name and moved into place, so readers never see a partial
+     * snapshot. If the move is refused (e.g. another process still maps the
+     * old file on Windows) the temporary file is used instead.
+     */
+    private static File write(File csvFile, File snapshotFile, long csvLength, long csvModified, long checksum)
+            throws IOException {
+        List<byte[][]> records = new ArrayList<>();
+        if (csvFile.isFile()) {
+            try (CsvReader reader = new CsvReader(
+                    new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
+                CsvRow row = new CsvRow();
+                reader.next(row); // Skip header
+                while (reader.next(row)) {
+                    int columns = row.size();
+                    if (columns <= BITS_ID_INDEX) {
+                        continue;
+                    }
+                    if (columns > 0xFF) {
+                        throw new IOException("CSV row has more than 255 columns");
+                    }
+                    byte[][] record = new byte[columns + 1][];
+                    for (int i = 0; i < columns; i++) {
+                        record[i + 1] = encode(row.getTrimmed(i));
+                    }
+                    record[0] = encode(normalize(row.getTrimmed(BITS_ID_INDEX)));
+                    records.add(record);
+                }
+            }
+        }
+
+        // Stable sort keeps the first registration of a duplicated ID first; later duplicates are dropped
+        records.sort(new Comparator<byte[][]>() {
+            @Override
+            public int compare(byte[][] a, byte[][] b) {
+                return compareBytes(a[0], b[0]);
+            }
+        });
+        List<byte[][]> unique = new ArrayList<>(records.size());
+        for (byte[][] record : records) {
+            if (unique.isEmpty() || compareBytes(unique.get(unique.size() - 1)[0], record[0]) != 0) {
+                unique.add(record);
+            }
+        }
+
+        File tmp = new File(snapshotFile.getParentFile(), snapshotFile.getName() + "." + System.nanoTime() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(csvLength);
+            out.writeLong(csvModified);
+            out.writeLong(checksum);
+            out.writeInt(unique.size());
+
+            long offset = HEADER_SIZE + (long) unique.size() * 4;
+            for (byte[][] record : unique) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Registry too large for snapshot format");
+                }
+                out.writeInt((int) offset);
+                offset += recordSize(record);
+            }
+            for (byte[][] record : unique) {
+                out.writeShort(record[0].length);
+                out.write(record[0]);
+                out.writeByte(record.length - 1);
+                for (int i = 1; i < record.length; i++) {
+                    out.writeShort(record[i].length);
+                    out.write(record[i]);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tmp.toPath(), snapshotFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return snapshotFile;
+        } catch (IOException e) {
+            tmp.deleteOnExit();
+            return tmp;
+        }
+    }
+
+    private static long recordSize(byte[][] record) {
+        long size = 2 + record[0].length + 1;
+        for (int i = 1; i < record.length; i++) {
+            size += 2 + record[i].length;
+        }
+        return size;
+    }
+
+    private static byte[] encode(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IOException("CSV field longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,465 @@
+package common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log (messages.txt, emergency_logs.txt) split into
+ * segments, so it no longer grows forever in one file.
+ *
+ * The original file is segment 0; later segments sit next to it as
+ * {@code name.000001.ext}, {@code name.000002.ext}, ... Writers append to
+ * the last segment and start a new one once it reaches
+ * {@code -Dclinic.log.segmentBytes} (default 4 MB) or has been open for
+ * {@code -Dclinic.log.segmentHours} (default 168). A segment is never
+ * renamed or written again once a newer one exists.
+ *
+ * The manifest ({@code name.manifest}) lists the segments with the first
+ * sequence number and time written to each, so a reader can resume from
+ * the segment holding a given event instead of re-reading everything.
+ * Old segments can be moved to an archive directory ({@link #archive}, or
+ * on each roll with {@code -Dclinic.log.keepSegments=n}); they simply leave
+ * the manifest, and readers positioned in them continue with the next one.
+ *
+ * Instances are shared per file ({@link #forFile}). Rolling and archiving
+ * hold a lock file, so several processes can write the same log; writers
+ * append under the same lock ({@link #locked}), so a record never lands in
+ * a segment another process has just left behind.
+ */
+public final class SegmentedLog {
+
+    private static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final long DEFAULT_SEGMENT_HOURS = 24 * 7;
+
+    private static final Map<String, SegmentedLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * One segment as listed in the manifest.
+     */
+    public static final class Segment {
+        private final int index;
+        private final long firstSequence;
+        private final long firstTimestamp;
+        private final File file;
+
+        Segment(int index, long firstSequence, long firstTimestamp, File file) {
+            this.index = index;
+            this.firstSequence = firstSequence;
+            this.firstTimestamp = firstTimestamp;
+            this.file = file;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /** Sequence number of the first record, or -1 if the log has none (or it is unknown). */
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+        /** When the segment was started (epoch millis), or 0 if unknown. */
+        public long getFirstTimestamp() {
+            return firstTimestamp;
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * A reader's place in the log: a segment and a byte offset within it.
+     */
+    public static final class Position {
+        private final int segment;
+        private final long offset;
+
+        public Position(int segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public int getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return segment + ":" + offset;
+        }
+    }
+
+    /**
+     * Work done while holding the log's lock.
+     */
+    public interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Reads records from one segment file.
+     */
+    public interface SegmentReader {
+        /**
+         * Consumes the complete records from {@code from} onwards.
+         * @return The offset just past the last record consumed.
+         */
+        long read(File segment, long from) throws IOException;
+    }
+
+    private final File baseFile;
+    private final File manifestFile;
+    private final File lockFile;
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final int keepSegments;
+
+    // Cached manifest, reloaded when the file changes
+    private List<Segment> segments;
+    private long manifestLength = -1;
+    private long manifestModified = -1;
+
+    // The lock file while this process holds it; guarded by this
+    private FileChannel heldLock;
+
+    SegmentedLog(File baseFile, long maxSegmentBytes, long maxSegmentMillis, int keepSegments) {
+        this.baseFile = baseFile.getAbsoluteFile();
+        this.manifestFile = sibling(this.baseFile, "manifest");
+        this.lockFile = new File(this.baseFile.getParentFile(), manifestFile.getName() + ".lock");
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentMillis;
+        this.keepSegments = keepSegments;
+    }
+
+    /**
+     * Returns the shared instance for the log whose first segment is
+     * {@code baseFile}, with the segment limits from the system properties.
+     */
+    public static SegmentedLog forFile(File baseFile) {
+        return logs.computeIfAbsent(baseFile.getAbsolutePath(), path -> new SegmentedLog(new File(path),
+            Long.getLong("clinic.log.segmentBytes", DEFAULT_SEGMENT_BYTES),
+            TimeUnit.HOURS.toMillis(Long.getLong("clinic.log.segmentHours", DEFAULT_SEGMENT_HOURS)),
+            Integer.getInteger("clinic.log.keepSegments", 0)));
+    }
+
+    public File getBaseFile() {
+        return baseFile;
+    }
+
+    /**
+     * The segments currently in the log, oldest first.
+     */
+    public synchronized List<Segment> segments() throws IOException {
+        if (manifestFile.length() != manifestLength || manifestFile.lastModified() != manifestModified) {
+            long length = manifestFile.length();
+            long modified = manifestFile.lastModified();
+            segments = Collections.unmodifiableList(loadManifest());
+            manifestLength = length;
+            manifestModified = modified;
+        }
+        return segments;
+    }
+
+    /**
+     * The segment new records are appended to.
+     */
+    public File activeFile() throws IOException {
+        List<Segment> all = segments();
+        return all.get(all.size() - 1).getFile();
+    }
+
+    /**
+     * True if the active segment has reached its size or age limit.
+     */
+    public boolean shouldRoll() throws IOException {
+        List<Segment> all = segments();
+        Segment active = all.get(all.size() - 1);
+        long length = active.getFile().length();
+        if (length == 0) {
+            return false;
+        }
+        return length >= maxSegmentBytes
+            || (active.getFirstTimestamp() > 0 && System.currentTimeMillis() - active.getFirstTimestamp() >= maxSegmentMillis);
+    }
+
+    /**
+     * Starts a new segment if the active one is full (checked again under
+     * the lock, as another process may have rolled already).
+     * @param nextSequence Sequence number of the next record, or -1 if the log has none.
+     * @return The active segment after rolling.
+     */
+    @SuppressWarnings("try")
+    public File rollIfNeeded(long nextSequence) throws IOException {
+        if (!shouldRoll()) {
+            return activeFile();
+        }
+        synchronized (this) {
+            try (Closeable lock = lock()) {
+                manifestLength = -1; // Re-read under the lock
+                if (shouldRoll()) {
+                    List<Segment> all = new ArrayList<>(segments());
+                    int index = all.get(all.size() - 1).getIndex() + 1;
+                    File file = segmentFile(index);
+                    file.createNewFile();
+                    all.add(new Segment(index, nextSequence, System.currentTimeMillis(), file));
+                    writeManifest(all);
+                }
+            }
+            if (keepSegments > 0) {
+                archive(new File(baseFile.getParentFile(), "archive"), keepSegments);
+            }
+            return activeFile();
+        }
+    }
+
+    /**
+     * Runs {@code action} holding the log's lock, which other processes
+     * writing the log and rolling it also take. A writer picks the active
+     * segment ({@link #rollIfNeeded}) and appends to it within one action,
+     * and returns only once the record has reached the file, so no reader
+     * moves on to a newer segment before it. The manifest is written the
+     * first time, so the original file's age counts from then.
+     */
+    @SuppressWarnings("try")
+    public synchronized <T> T locked(LockedAction<T> action) throws IOException {
+        try (Closeable lock = lock()) {
+            if (!manifestFile.exists()) {
+                manifestLength = -1;
+                writeManifest(new ArrayList<>(segments()));
+            }
+            return action.run();
+        }
+    }
+
+    /**
+     * Position at the current end of the log, for a reader interested only
+     * in records written from now on.
+     */
+    public Position end() throws IOException {
+        List<Segment> all = segments();
+        Segment active = all.get(all.size() - 1);
+        return new Position(active.getIndex(), active.getFile().length());
+    }
+
+    /**
+     * Position at the start of the oldest segment still in the log.
+     */
+    public Position start() throws IOException {
+        return new Position(segments().get(0).getIndex(), 0);
+    }
+
+    /**
+     * Position at the start of the segment holding {@code sequence}. The
+     * reader skips records before it.
+     */
+    public Position positionOfSequence(long sequence) throws IOException {
+        Segment found = segments().get(0);
+        for (Segment segment : segments()) {
+            if (segment.getFirstSequence() >= 0 && segment.getFirstSequence() <= sequence) {
+                found = segment;
+            }
+        }
+        return new Position(found.getIndex(), 0);
+    }
+
+    /**
+     * Position at the start of the segment that was active at
+     * {@code epochMillis}.
+     */
+    public Position positionOfTime(long epochMillis) throws IOException {
+        Segment found = segments().get(0);
+        for (Segment segment : segments()) {
+            if (segment.getFirstTimestamp() > 0 && segment.getFirstTimestamp() <= epochMillis) {
+                found = segment;
+            }
+        }
+        return new Position(found.getIndex(), 0);
+    }
+
+    /**
+     * Reads from {@code from} to the end of the log, moving on to newer
+     * segments as each older one is finished. If {@code from} points into a
+     * segment that has since been archived, reading continues at the oldest
+     * remaining one.
+     * @return Where to continue next time.
+     */
+    public Position read(Position from, SegmentReader reader) throws IOException {
+        List<Segment> all = segments();
+        int i = 0;
+        while (i < all.size() - 1 && all.get(i).getIndex() < from.getSegment()) {
+            i++;
+        }
+        long offset = all.get(i).getIndex() == from.getSegment() ? from.getOffset() : 0;
+
+        while (true) {
+            Segment segment = all.get(i);
+            File file = segment.getFile();
+            if (file.exists()) {
+                // The active segment may have been cut back (torn tail recovery)
+                offset = reader.read(file, Math.min(offset, file.length()));
+            }
+            if (i == all.size() - 1) {
+                return new Position(segment.getIndex(), offset);
+            }
+            i++;
+            offset = 0;
+        }
+    }
+
+    /**
+     * Moves all but the newest {@code keepSegments} segments into
+     * {@code archiveDir} and drops them from the manifest. The active
+     * segment is never moved. A segment that cannot be moved right now
+     * (e.g. open in another program on Windows) stays for the next call.
+     * @return The number of segments archived.
+     */
+    @SuppressWarnings("try")
+    public synchronized int archive(File archiveDir, int keepSegments) throws IOException {
+        try (Closeable lock = lock()) {
+            manifestLength = -1;
+            List<Segment> all = new ArrayList<>(segments());
+            int archivable = Math.min(all.size() - 1, all.size() - Math.max(1, keepSegments));
+            if (archivable <= 0) {
+                return 0;
+            }
+            if (!archiveDir.isDirectory() && !archiveDir.mkdirs()) {
+                throw new IOException("Cannot create " + archiveDir);
+            }
+
+            int archived = 0;
+            while (archived < archivable) {
+                File file = all.get(0).getFile();
+                try {
+                    if (file.exists()) {
+                        Files.move(file.toPath(), new File(archiveDir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    break;
+                }
+                all.remove(0);
+                archived++;
+            }
+            if (archived > 0) {
+                writeManifest(all);
+            }
+            return archived;
+        }
+    }
+
+    private File segmentFile(int index) {
+        if (index == 0) {
+            return baseFile;
+        }
+        return sibling(baseFile, String.format(Locale.ROOT, "%06d", index) + extension(baseFile));
+    }
+
+    /**
+     * Without a manifest the log is just its original file, started now.
+     */
+    private List<Segment> loadManifest() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        if (manifestFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Files.newInputStream(manifestFile.toPath()), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split("\t", 4);
+                    if (parts.length == 4) {
+                        loaded.add(new Segment(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                            new File(baseFile.getParentFile(), parts[3])));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed log manifest " + manifestFile, e);
+            }
+        }
+        if (loaded.isEmpty()) {
+            loaded.add(new Segment(0, -1, System.currentTimeMillis(), baseFile));
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces the manifest in one step, so readers see either the old or
+     * the new list.
+     */
+    private void writeManifest(List<Segment> all) throws IOException {
+        File temp = new File(manifestFile.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8))) {
+            writer.write("# segment\tfirst_sequence\tfirst_timestamp\tfile");
+            writer.newLine();
+            for (Segment segment : all) {
+                writer.write(segment.getIndex() + "\t" + segment.getFirstSequence() + "\t" + segment.getFirstTimestamp()
+                    + "\t" + segment.getFile().getName());
+                writer.newLine();
+            }
+        }
+        Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifestLength = -1;
+    }
+
+    /**
+     * Takes the lock file; closing the result releases it. Called holding
+     * this object's monitor, so a lock already held was taken further up
+     * the same thread (rolling inside {@link #locked}) and is left alone.
+     */
+    private Closeable lock() throws IOException {
+        if (heldLock != null) {
+            return () -> { };
+        }
+        FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        heldLock = channel;
+        return () -> {
+            heldLock = null;
+            channel.close();
+        };
+    }
+
+    /**
+     * name.ext to name.{@code suffix}, in the same directory.
+     */
+    private static File sibling(File file, String suffix) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return new File(file.getParentFile(), stem + "." + suffix);
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+}
@@ -0,0 +1,22 @@
+package common;
+
+/**
+ * Read access to the student registry by BITS ID, independent of where the
+ * rows are kept (mapped snapshot file or off-heap record store).
+ */
+public interface StudentRegistry {
+
+    /**
+     * Looks up a BITS ID (case-insensitive).
+     * @return The row's unquoted, trimmed fields, or null if not present.
+     */
+    String[] find(String bitsId);
+
+    int size();
+
+    /**
+     * Returns false once the source CSV has changed and the registry should
+     * be reopened.
+     */
+    boolean isCurrent();
+}
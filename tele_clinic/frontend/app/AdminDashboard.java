@@ -10,36 +10,52 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicTabbedPaneUI;
 
+import common.LogTailer;
+import common.SegmentedLog;
 import core.ClinicUser;
 import core.IClinicOperations;
+import util.ClinicRepository;
+import util.StudentDataFetcher;
+import util.StudentDataFetcher.StudentMedicalData;
 
 /**
  * AdminDashboard - LIGHT THEME
@@ -110,10 +126,19 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 	private static final String MESSAGES_FILE = "...\\..\\backend\\oops\\messages.txt";
 	private JButton notificationIcon;
 	private int unreadMessagesCount = 0;
-	private long lastMsgSize = 0;
+	private SegmentedLog.Position msgPosition;
 
 	private JTabbedPane mainTabbedPane;
 
+	private static final int SUGGESTION_LIMIT = 8;
+	// One daemon worker: suggestion queries are tiny and only the latest one matters
+	private final ExecutorService suggestionExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "LookupSuggestionThread");
+		t.setDaemon(true);
+		return t;
+	});
+	private final AtomicInteger suggestionGeneration = new AtomicInteger();
+
 	public AdminDashboard(BPDCClinicApp app) {
 		this.app = app;
 		setLayout(new BorderLayout());
@@ -462,20 +487,8 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 	}
 
 	private boolean simulateWritePrescription(String[] data) {
-		final String FILE_NAME = "prescriptions.txt";
-		try (java.io.FileWriter fw = new java.io.FileWriter(FILE_NAME, true);
-				java.io.PrintWriter pw = new java.io.PrintWriter(fw)) {
-			java.io.File file = new java.io.File(FILE_NAME);
-			if (file.length() == 0) {
-				pw.println("StudentID,Timestamp,StaffID,StaffName,Medication,Notes");
-			}
-			String entry = String.join(",", data);
-			pw.println(entry);
-			return true;
-		} catch (IOException e) {
-			System.err.println("Error writing prescription: " + e.getMessage());
-			return false;
-		}
+		// Stored through the configured clinic repository, like every other prescription
+		return ClinicRepository.getInstance().addPrescription(data);
 	}
 
 	private void updateNotificationIcon() {
@@ -503,20 +516,19 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 	private void startMessageWatcher() {
 		new Thread(() -> {
 			try {
-				Path filePath = Paths.get(MESSAGES_FILE);
-				Path dir = filePath.getParent();
-				if (dir == null) {
+				// messages.txt is segmented; watch its directory so new segments are picked up too
+				SegmentedLog msgLog = SegmentedLog.forFile(new File(MESSAGES_FILE));
+				Path dir = msgLog.getBaseFile().toPath().getParent();
+				if (dir == null || !dir.toFile().isDirectory()) {
 					System.err.println("Error: Parent directory not found.");
 					return;
 				}
 
 				WatchService watchService = FileSystems.getDefault().newWatchService();
-				dir.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
+				dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
 
-				File msgFile = filePath.toFile();
-				if (msgFile.exists()) {
-					lastMsgSize = msgFile.length();
-				}
+				msgPosition = msgLog.end();
+				LogTailer msgTailer = new LogTailer(this::showNewMessage);
 
 				while (true) {
 					WatchKey key;
@@ -526,27 +538,11 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 						return;
 					}
 
-					for (WatchEvent<?> event : key.pollEvents()) {
-						if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
-							File changedFile = dir.resolve((Path) event.context()).toFile();
-							if (changedFile.getAbsolutePath().equals(msgFile.getAbsolutePath())) {
-								long newSize = changedFile.length();
-								if (newSize > lastMsgSize) {
-									try (RandomAccessFile raf = new RandomAccessFile(changedFile, "r")) {
-										raf.seek(lastMsgSize);
-										String line;
-										while ((line = raf.readLine()) != null) {
-											if (!line.trim().isEmpty()) {
-												showLiveNotification(line.trim());
-											}
-										}
-										lastMsgSize = newSize;
-									} catch (Exception e) {
-										System.err.println("Error reading new message: " + e.getMessage());
-									}
-								}
-							}
-						}
+					key.pollEvents();
+					try {
+						msgPosition = msgLog.read(msgPosition, msgTailer);
+					} catch (Exception e) {
+						System.err.println("Error reading new message: " + e.getMessage());
 					}
 					key.reset();
 				}
@@ -556,6 +552,15 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 		}, "MessageWatcherThread").start();
 	}
 
+	/**
+	 * Shows a line appended to messages.txt.
+	 */
+	private void showNewMessage(String line) {
+		if (!line.trim().isEmpty()) {
+			showLiveNotification(line.trim());
+		}
+	}
+
 	private JPanel createDashboardContent() {
 		JPanel dashboard = new JPanel(new BorderLayout(0, 15));
 		dashboard.setOpaque(false);
@@ -615,8 +620,14 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 				JOptionPane.showMessageDialog(panel, "Enter a valid BITS ID.", "Error", JOptionPane.WARNING_MESSAGE);
 				return;
 			}
-			app.lookupStudentDashboard(bitsId);
-			SwingUtilities.invokeLater(() -> {
+			// Completes on the EDT once the result is shown; cancelled if a newer search replaced it
+			CompletableFuture<Boolean> lookup = app.lookupStudentDashboard(bitsId);
+			lookupButton.setText("SEARCHING…");
+			lookup.whenComplete((shown, error) -> {
+				lookupButton.setText("► SEARCH");
+				if (error != null) {
+					return;
+				}
 				mainTabbedPane.setSelectedIndex(1);
 				prescriptionStudentIdField.setText(bitsId);
 				if (prescriptionStudentIdField.getFont().isItalic()) {
@@ -626,10 +637,144 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 			});
 		});
 		panel.add(lookupButton);
+		installLookupSuggestions(bitsIdField, "Enter BITS ID", lookupButton::doClick);
 
 		return panel;
 	}
 
+	/**
+	 * Shows as-you-type suggestions (by BITS ID or name prefix) under a lookup
+	 * field. Queries run on a background thread; a result is dropped if the
+	 * user has typed again since it was requested, so typing never waits on it.
+	 * @param onChoose Run after a suggestion has been copied into the field.
+	 */
+	private void installLookupSuggestions(JTextField field, String placeholder, Runnable onChoose) {
+		JList<StudentMedicalData> list = new JList<>();
+		list.setFont(INPUT_FONT);
+		list.setFocusable(false);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setCellRenderer(new DefaultListCellRenderer() {
+			@Override
+			public Component getListCellRendererComponent(JList<?> l, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				StudentMedicalData data = (StudentMedicalData) value;
+				return super.getListCellRendererComponent(l, data.bitsId + "  —  " + data.fullName, index,
+						isSelected, cellHasFocus);
+			}
+		});
+
+		JPopupMenu popup = new JPopupMenu();
+		popup.setFocusable(false);
+		popup.setBorder(new LineBorder(LIGHT_BORDER, 1));
+		popup.add(list);
+
+		Runnable choose = () -> {
+			StudentMedicalData selected = list.getSelectedValue();
+			if (selected == null) {
+				return;
+			}
+			popup.setVisible(false);
+			field.setText(selected.bitsId);
+			suggestionGeneration.incrementAndGet(); // Discard the query fired by setText
+			onChoose.run();
+		};
+
+		Runnable requestSuggestions = () -> {
+			int generation = suggestionGeneration.incrementAndGet();
+			String query = field.getText().trim();
+			if (query.isEmpty() || query.equals(placeholder) || !field.isFocusOwner()) {
+				popup.setVisible(false);
+				return;
+			}
+			suggestionExecutor.execute(() -> {
+				if (generation != suggestionGeneration.get()) {
+					return; // Superseded before it started
+				}
+				List<StudentMedicalData> results = StudentDataFetcher.suggestStudents(query, SUGGESTION_LIMIT);
+				SwingUtilities.invokeLater(() -> {
+					if (generation != suggestionGeneration.get() || !field.isShowing()) {
+						return;
+					}
+					if (results.isEmpty()) {
+						popup.setVisible(false);
+						return;
+					}
+					list.setListData(results.toArray(new StudentMedicalData[0]));
+					list.setVisibleRowCount(results.size());
+					list.setSelectedIndex(0);
+					popup.pack();
+					if (!popup.isVisible()) {
+						popup.show(field, 0, field.getHeight());
+					}
+				});
+			});
+		};
+
+		field.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				requestSuggestions.run();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				requestSuggestions.run();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+			}
+		});
+
+		field.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				if (!popup.isVisible()) {
+					return;
+				}
+				int size = list.getModel().getSize();
+				switch (e.getKeyCode()) {
+				case KeyEvent.VK_DOWN:
+					list.setSelectedIndex(Math.min(list.getSelectedIndex() + 1, size - 1));
+					e.consume();
+					break;
+				case KeyEvent.VK_UP:
+					list.setSelectedIndex(Math.max(list.getSelectedIndex() - 1, 0));
+					e.consume();
+					break;
+				case KeyEvent.VK_ENTER:
+					choose.run();
+					e.consume();
+					break;
+				case KeyEvent.VK_ESCAPE:
+					popup.setVisible(false);
+					e.consume();
+					break;
+				default:
+					break;
+				}
+			}
+		});
+
+		field.addFocusListener(new FocusAdapter() {
+			@Override
+			public void focusLost(FocusEvent e) {
+				popup.setVisible(false);
+			}
+		});
+
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int index = list.locationToIndex(e.getPoint());
+				if (index >= 0) {
+					list.setSelectedIndex(index);
+					choose.run();
+				}
+			}
+		});
+	}
+
 	private JPanel createCompactEmailCard() {
 		JPanel card = new JPanel(new BorderLayout(12, 0));
 		card.setBackground(CARD_BACKGROUND);
@@ -756,7 +901,9 @@ public class AdminDashboard extends JPanel implements IClinicOperations {
 				JOptionPane.showMessageDialog(form, "Enter a valid BITS ID.", "Error", JOptionPane.WARNING_MESSAGE);
 				return;
 			}
-			app.lookupStudentDashboard(bitsId);
+			CompletableFuture<Boolean> lookup = app.lookupStudentDashboard(bitsId);
+			searchBtn.setText("LOADING…");
+			lookup.whenComplete((shown, error) -> searchBtn.setText("► VIEW RECORD"));
 		});
 		form.add(searchBtn);
 
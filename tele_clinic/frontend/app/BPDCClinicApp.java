@@ -1,15 +1,19 @@
 package app;
 
 import java.awt.CardLayout;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.util.Optional; 
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane; 
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
-import util.StudentDataFetcher; 
+import util.ClinicRepository;
+import util.EmergencyLogWriter;
+import util.PasswordHasher;
 import util.StudentDataFetcher.StudentMedicalData; 
 
 public class BPDCClinicApp extends JFrame {
@@ -24,6 +28,11 @@ public class BPDCClinicApp extends JFrame {
 
     // Member field to hold the logged-in Student object (for card data access)
     private StudentDashboard.Student currentStudent = null; 
+
+    // Student lookup currently in flight (EDT only), and the title to restore when it lands
+    private CompletableFuture<Optional<StudentMedicalData>> pendingLookup = null;
+    private CompletableFuture<Boolean> pendingShown = null;
+    private String titleBeforeLookup = null;
     
     // Getter for the current student object, used by StudentDashboard
     public StudentDashboard.Student getStudent() {
@@ -110,14 +119,44 @@ public class BPDCClinicApp extends JFrame {
     /**
      * Staff/Nurse Lookup Method: Attempts to show the student dashboard 
      * by fetching full data from CSV using the BITS ID without password.
+     * The lookup runs in the background; the window shows a loading state
+     * until the result is applied on the EDT. Starting a new lookup cancels
+     * one that is still in flight, so only the latest search is shown.
      * @param bitsId The BITS ID to lookup.
+     * @return A future completed on the EDT with true if the dashboard was
+     *         shown and false if no record was found; cancelled if a newer
+     *         lookup superseded this one.
      */
-    public void lookupStudentDashboard(String bitsId) {
-        
-        // 1. Fetch ALL data from the CSV using the BITS ID
-        Optional<StudentMedicalData> medicalDataOpt = 
-            StudentDataFetcher.fetchStudentData(bitsId);
-        
+    public CompletableFuture<Boolean> lookupStudentDashboard(String bitsId) {
+        if (pendingLookup != null) {
+            pendingLookup.cancel(false);
+            pendingShown.cancel(false);
+        }
+        CompletableFuture<Boolean> shown = new CompletableFuture<>();
+        CompletableFuture<Optional<StudentMedicalData>> lookup = ClinicRepository.getInstance().findStudentAsync(bitsId);
+        pendingLookup = lookup;
+        pendingShown = shown;
+        showLookupLoading(bitsId);
+
+        lookup.whenComplete((medicalDataOpt, error) -> SwingUtilities.invokeLater(() -> {
+            if (lookup != pendingLookup) {
+                return; // Superseded: a newer search owns the UI now
+            }
+            pendingLookup = null;
+            pendingShown = null;
+            hideLookupLoading();
+
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Could not look up BITS ID: " + bitsId + ". " + error.getMessage(), "Lookup Failed", JOptionPane.ERROR_MESSAGE);
+                shown.complete(false);
+                return;
+            }
+            shown.complete(showLookupResult(bitsId, medicalDataOpt));
+        }));
+        return shown;
+    }
+
+    private boolean showLookupResult(String bitsId, Optional<StudentMedicalData> medicalDataOpt) {
         if (medicalDataOpt.isPresent()) {
              StudentMedicalData data = medicalDataOpt.get();
              
@@ -132,12 +171,31 @@ public class BPDCClinicApp extends JFrame {
              cardLayout.show(mainPanel, "StudentDashboard");
              // Update title to show context for the staff member
              setTitle(fullStudent.getDashboardTitle() + " (Viewing Record: " + data.fullName + ")"); 
+             return true;
              
         } else {
             // Data Lookup Failed
             JOptionPane.showMessageDialog(this, "No medical record found for BITS ID: " + bitsId + ". Please check the ID or confirm registration status.", "Record Not Found", JOptionPane.ERROR_MESSAGE);
             // If called from AdminDashboard, this stays on AdminDashboard
             // If called from BPDCLoginFullScreen, the user would be stuck on the login screen (which is fine)
+            return false;
+        }
+    }
+
+    // Loading state: busy cursor and the BITS ID being fetched in the title
+    private void showLookupLoading(String bitsId) {
+        if (titleBeforeLookup == null) {
+            titleBeforeLookup = getTitle();
+        }
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setTitle("BPDC Clinic System - Loading record for " + bitsId + "...");
+    }
+
+    private void hideLookupLoading() {
+        setCursor(Cursor.getDefaultCursor());
+        if (titleBeforeLookup != null) {
+            setTitle(titleBeforeLookup);
+            titleBeforeLookup = null;
         }
     }
     
@@ -168,6 +226,13 @@ public class BPDCClinicApp extends JFrame {
     }
 
     public static void main(String[] args) {
+        // Time the password hash while the UI starts, before anyone logs in
+        PasswordHasher.calibrateInBackground();
+        // Drop any emergency event torn by a crash before new ones are appended
+        EmergencyLogWriter.recoverLog();
+        // Open the storage now; the CSV backend first finishes any change a crash interrupted
+        ClinicRepository.getInstance();
+
         // Run on the Event Dispatch Thread
         SwingUtilities.invokeLater(BPDCClinicApp::new);
     }
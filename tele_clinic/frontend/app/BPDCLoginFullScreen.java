@@ -34,14 +34,17 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 
 import core.ClinicUser;
-import util.CredentialManager;
+import util.ClinicRepository;
+import util.LoginThrottle;
 
 
 // CHANGED: Extends JPanel instead of JFrame
 public class BPDCLoginFullScreen extends JPanel { 
 
     private final BPDCClinicApp app; 
-    private final CredentialManager credentialManager = new CredentialManager(); 
+    private final ClinicRepository repository = ClinicRepository.getInstance();
+    private final LoginThrottle loginThrottle = new LoginThrottle();
+    private final String terminalId = LoginThrottle.localTerminal();
     
     // UI components needed for logic
     private JTextField usernameField;
@@ -162,11 +165,20 @@ public class BPDCLoginFullScreen extends JPanel {
             return;
         }
 
-        // 2. Verify credentials using the manager
-        Optional<String> verifiedRole = credentialManager.verifyCredentials(bitsId, password);
+        // 2. Turn away repeated attempts before they reach the credentials file
+        long waitMillis = loginThrottle.tryAcquire(bitsId, terminalId);
+        if (waitMillis > 0) {
+            long seconds = (waitMillis + 999) / 1000;
+            JOptionPane.showMessageDialog(this, "Too many login attempts. Please try again in " + seconds + " seconds.", "Login Failed", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // 3. Verify credentials through the clinic repository
+        Optional<String> verifiedRole = repository.verifyCredentials(bitsId, password);
 
         if (verifiedRole.isPresent()) {
             // Successful Login
+            loginThrottle.loginSucceeded(bitsId);
             String actualRole = verifiedRole.get();
             ClinicUser user; // Declare user as the base abstract class type (Polymorphism)
             
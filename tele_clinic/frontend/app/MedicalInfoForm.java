@@ -29,14 +29,13 @@ import javax.swing.JPasswordField;
 import javax.swing.JTextField;
 import javax.swing.border.TitledBorder;
 
-import util.CredentialManager;
-import util.MedicalDataWriter;
+import util.ClinicRepository;
 
 // CHANGED: Extends JPanel instead of JFrame to work with the CardLayout manager
 public class MedicalInfoForm extends JPanel { 
     
-    // NEW: Reference to the credential manager (Local File I/O)
-    private final CredentialManager credentialManager = new CredentialManager();
+    // Credentials and registrations are stored through the clinic repository (CSV files by default)
+    private final ClinicRepository repository = ClinicRepository.getInstance();
     // NEW: Reference to the main application manager
     private final BPDCClinicApp app; 
     
@@ -743,15 +742,7 @@ public class MedicalInfoForm extends JPanel {
         String bitsId = getFieldValue(bitsIdField);
         String password = getFieldValue(passwordField); 
         
-        // 3. Register Credentials first (Mandatory)
-        // Demonstrates Exception Handling / User Feedback if registration fails
-        boolean credsSaved = credentialManager.addCredential(bitsId, password, "Student");
-        if (!credsSaved) {
-             JOptionPane.showMessageDialog(this, "Failed to save login credentials. This BITS ID might already be registered.", "Registration Failed", JOptionPane.ERROR_MESSAGE);
-             return false;
-        }
-        
-        // 4. Collect remaining medical and personal data
+        // 3. Collect remaining medical and personal data
         String fullName = getFieldValue(fullNameField);
         // MODIFIED: Retrieve gender from JComboBox
         String gender = (String) genderCombo.getSelectedItem(); 
@@ -773,7 +764,7 @@ public class MedicalInfoForm extends JPanel {
         // Note: Guardian Email is collected but skipped here as per previous CSV structure analysis.
         
         
-        // 5. Build the data array in the order defined by the CSV_HEADER (10 columns only):
+        // 4. Build the data array in the order defined by the CSV_HEADER (10 columns only):
         // FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramID,BloodType,Allergies,ChronicIllnesses,InsuranceType
         // NOTE: If you update MedicalDataWriter.java to save Guardian fields, update CSV_HEADER there.
         // For now, we manually append the guardian data as extra columns to allow fetcher to retrieve it.
@@ -792,7 +783,12 @@ public class MedicalInfoForm extends JPanel {
             guardianContact, // EXTRA COLUMN 12
         };
         
-        // 6. Call the writer utility to save medical data
-        return MedicalDataWriter.writeDataToCsv(data);
+        // 5. Save credentials and medical data together: both are stored or neither is
+        // Demonstrates Exception Handling / User Feedback if registration fails
+        boolean saved = repository.registerStudent(bitsId, password, "Student", data);
+        if (!saved) {
+             JOptionPane.showMessageDialog(this, "Failed to save registration. This BITS ID might already be registered.", "Registration Failed", JOptionPane.ERROR_MESSAGE);
+        }
+        return saved;
     }
 }
\ No newline at end of file
@@ -10,31 +10,34 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.LineBorder;
 
 import core.ClinicUser;
 import core.IClinicOperations;
-import util.EmergencyLogWriter;
+import util.ClinicRepository;
+import util.PrescriptionFetcher;
 
 /**
  * StudentDashboard - LIGHT THEME with Emergency Button and Logout
@@ -59,8 +62,11 @@ public class StudentDashboard extends JPanel implements IClinicOperations {
     }
 
     // --- Data Storage ---
+    // Prescriptions are read a page at a time, newest first; only the first page is loaded up front
+    private static final int PRESCRIPTION_PAGE_SIZE = 20;
     private List<Prescription> prescriptions = new ArrayList<>();
-    private static final String PRESCRIPTION_FILE_PATH = "C://Users//Kusha//OneDrive//Desktop//tele_clinic//frontend//prescriptions.txt";
+    private ClinicRepository.PrescriptionHistory prescriptionHistory;
+    private final ClinicRepository repository = ClinicRepository.getInstance();
     // ----------------------
 
     public static class Student extends ClinicUser {
@@ -202,6 +208,7 @@ public class StudentDashboard extends JPanel implements IClinicOperations {
     // --- NEW: Load Prescription Data from File ---
     private void loadPrescriptions() {
         prescriptions.clear();
+        prescriptionHistory = null;
         
         // Ensure currentBitsId is set before attempting to filter
         if (currentBitsId.equals("N/A") || currentBitsId.isEmpty()) {
@@ -209,49 +216,25 @@ public class StudentDashboard extends JPanel implements IClinicOperations {
             return;
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(PRESCRIPTION_FILE_PATH))) {
-            
-            String line;
-            // 🔑 FIX 1: Read and skip the header line (StudentID,Timestamp,StaffID,StaffName,Medication,Notes)
-            br.readLine(); 
-
-            while ((line = br.readLine()) != null) {
-                
-                // For simplicity, strip all quotes added by the writer and split by comma.
-                String noQuotesLine = line.replace("\"", "");
-                String[] parts = noQuotesLine.split(",");
-                
-                // 🔑 FIX 2: Check for at least 6 parts
-                if (parts.length >= 6) {
-                    
-                    String studentId = parts[0].trim();
-                    String date = parts[1].trim();     // Maps to Timestamp
-                    String staffName = parts[3].trim(); // Maps to Doctor's name
-                    String medication = parts[4].trim(); 
-                    String dosage = parts[5].trim();   // Maps to Notes/Instructions
-
-                    // 🔑 FIX 3: Filter by the currently logged-in student ID
-                    if (studentId.equals(currentBitsId)) {
-                        prescriptions.add(new Prescription(
-                            date,       // Use Timestamp as the date
-                            medication, 
-                            dosage,     // Use Notes as the dosage/instructions
-                            staffName   // Use StaffName as the doctor
-                        ));
-                    }
-                }
-            }
-            // Sort by date (optional, but good practice for history) - reverse order for newest first
-            // Note: Simple String comparison won't work perfectly for dates unless they are YYYY-MM-DD
-            Collections.reverse(prescriptions); 
-            
-            System.out.println("Loaded " + prescriptions.size() + " prescriptions for ID: " + currentBitsId);
-
-        } catch (IOException e) {
-            System.err.println("Error reading prescription file: " + e.getMessage());
-            // Optionally show a dialog to the user or log the error
-            // JOptionPane.showMessageDialog(this, "Could not load prescription history.", "Error", JOptionPane.ERROR_MESSAGE);
+        // Newest first, from the clinic repository; older pages load as the history is scrolled.
+        // The history stays as opened here until the next reload, so its pages never shift.
+        prescriptionHistory = repository.openPrescriptionHistory(currentBitsId);
+        prescriptions.addAll(toPrescriptions(prescriptionHistory.page(0, PRESCRIPTION_PAGE_SIZE)));
+
+        System.out.println("Loaded " + prescriptions.size() + " prescriptions for ID: " + currentBitsId);
+    }
+
+    private static List<Prescription> toPrescriptions(List<PrescriptionFetcher.PrescriptionEntry> entries) {
+        List<Prescription> page = new ArrayList<>(entries.size());
+        for (PrescriptionFetcher.PrescriptionEntry entry : entries) {
+            page.add(new Prescription(
+                entry.timestamp,   // Use Timestamp as the date
+                entry.medication, 
+                entry.notes,       // Use Notes as the dosage/instructions
+                entry.staffName    // Use StaffName as the doctor
+            ));
         }
+        return page;
     }
     // ---------------------------------------------
 
@@ -395,7 +378,7 @@ public class StudentDashboard extends JPanel implements IClinicOperations {
                 JOptionPane.WARNING_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
-            if (EmergencyLogWriter.logAndNotifyEmergency(currentBitsId, currentFullName)) {
+            if (repository.logEmergency(currentBitsId, currentFullName)) {
                 JOptionPane.showMessageDialog(this,
                         "EMERGENCY ALERT SENT!\nClinic staff and wardens have been notified via Telegram for user: " + currentBitsId,
                         "ALERT CONFIRMED",
@@ -680,86 +663,202 @@ public class StudentDashboard extends JPanel implements IClinicOperations {
         panel.add(topPanel, BorderLayout.NORTH);
 
         // CENTER: Prescription Content
-        JPanel contentPanel = new JPanel();
-        contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+        JPanel contentPanel = new JPanel(new BorderLayout(0, 30));
         contentPanel.setOpaque(false);
         contentPanel.setBorder(BorderFactory.createEmptyBorder(20, 50, 20, 50));
 
         JLabel titleLabel = new JLabel("Prescription History");
         titleLabel.setFont(HEADER_TITLE_FONT);
         titleLabel.setForeground(BRAND_BLUE);
-        contentPanel.add(titleLabel);
-        contentPanel.add(Box.createVerticalStrut(30));
+        contentPanel.add(titleLabel, BorderLayout.NORTH);
 
-        // --- FIX: Dynamically add prescription items from the loaded list ---
-        if (prescriptions.isEmpty()) {
+        if (prescriptionHistory == null || prescriptionHistory.size() == 0) {
             JLabel emptyLabel = new JLabel("No prescription history found.", SwingConstants.CENTER);
             emptyLabel.setFont(BODY_FONT_PLAIN);
             emptyLabel.setForeground(DARK_BLUE);
-            contentPanel.add(emptyLabel);
+            emptyLabel.setVerticalAlignment(SwingConstants.TOP);
+            contentPanel.add(emptyLabel, BorderLayout.CENTER);
         } else {
-            for (Prescription rx : prescriptions) {
-                JPanel rxPanel = createPrescriptionItemPanel(rx.date, rx.medication, rx.dosage, rx.doctor);
-                contentPanel.add(rxPanel);
-                contentPanel.add(Box.createVerticalStrut(20));
+            // One list with a shared renderer instead of a panel per prescription:
+            // only the rows in view are painted, and older pages are read in on scroll
+            PrescriptionListModel model = new PrescriptionListModel(prescriptionHistory, prescriptions);
+            JList<Prescription> list = new JList<>(model);
+            list.setCellRenderer(new PrescriptionCellRenderer());
+            list.setFixedCellHeight(PrescriptionCellRenderer.ROW_HEIGHT);
+            list.setOpaque(false);
+            list.setBackground(BACKGROUND_COLOR);
+
+            JScrollPane scrollPane = new JScrollPane(list);
+            scrollPane.setBorder(BorderFactory.createEmptyBorder());
+            scrollPane.getViewport().setBackground(BACKGROUND_COLOR);
+            scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+            scrollPane.getVerticalScrollBar().setUnitIncrement(PrescriptionCellRenderer.ROW_HEIGHT / 4);
+            scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+                JScrollBar bar = (JScrollBar) e.getAdjustable();
+                if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - 3 * PrescriptionCellRenderer.ROW_HEIGHT) {
+                    model.loadNextPage();
+                }
+            });
+            contentPanel.add(scrollPane, BorderLayout.CENTER);
+            if (prescriptions.size() < PRESCRIPTION_PAGE_SIZE) {
+                model.loadNextPage(); // Rows of the first page were unreadable; the list may not fill the view to scroll
             }
         }
-        // ------------------------------------------------------------------
-
-        contentPanel.add(Box.createVerticalGlue());
-
-        JScrollPane scrollPane = new JScrollPane(contentPanel);
-        scrollPane.setBorder(BorderFactory.createEmptyBorder());
-        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
 
-        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(contentPanel, BorderLayout.CENTER);
         return panel;
     }
 
-    // 🔑 Helper: Create prescription item card
-    private JPanel createPrescriptionItemPanel(String date, String medication, String dosage, String doctor) {
-        JPanel card = new JPanel(new BorderLayout());
-        card.setBorder(BorderFactory.createCompoundBorder(
-            new LineBorder(LIGHT_BORDER, 2),
-            BorderFactory.createEmptyBorder(15, 20, 15, 20)
-        ));
-        card.setBackground(CARD_BACKGROUND);
-        card.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
-
-        JPanel leftPanel = new JPanel();
-        leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.Y_AXIS));
-        leftPanel.setOpaque(false);
+    /**
+     * List model over a student's prescription history: starts with the
+     * first page and reads older ones (off the event thread) when asked.
+     * A page can come back short or empty (malformed rows, or the file
+     * could not be read); reading then goes on with the next page, as a
+     * list that does not grow gives the scrollbar nothing to ask again with.
+     */
+    private static class PrescriptionListModel extends AbstractListModel<Prescription> {
+        private static final long serialVersionUID = 1L;
+        private static final int PAGE_ATTEMPTS = 3;
+        private static final int RETRY_MILLIS = 500;
+
+        private final ClinicRepository.PrescriptionHistory history;
+        private final List<Prescription> loaded;
+        private int nextRow;
+        private int wanted;
+        private int attempts;
+        private boolean loading;
+
+        PrescriptionListModel(ClinicRepository.PrescriptionHistory history, List<Prescription> firstPage) {
+            this.history = history;
+            this.loaded = new ArrayList<>(firstPage);
+            this.nextRow = PRESCRIPTION_PAGE_SIZE;
+        }
 
-        JLabel dateLabel = new JLabel("Date: " + date);
-        dateLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        dateLabel.setForeground(DARK_BLUE);
-        leftPanel.add(dateLabel);
+        @Override
+        public int getSize() {
+            return loaded.size();
+        }
 
-        JLabel medLabel = new JLabel("Medication: " + medication);
-        medLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        medLabel.setForeground(DARK_BLUE);
-        leftPanel.add(medLabel);
+        @Override
+        public Prescription getElementAt(int index) {
+            return loaded.get(index);
+        }
 
-        JLabel dosageLabel = new JLabel("Dosage: " + dosage);
-        dosageLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        dosageLabel.setForeground(new Color(100, 110, 120));
-        leftPanel.add(dosageLabel);
+        /**
+         * Reads older prescriptions until a page's worth has arrived or the
+         * history is exhausted, unless a read is already under way. Called
+         * on the event thread.
+         */
+        void loadNextPage() {
+            if (loading || nextRow >= history.size()) {
+                return;
+            }
+            loading = true;
+            wanted = PRESCRIPTION_PAGE_SIZE;
+            readPage();
+        }
 
-        JLabel doctorLabel = new JLabel("Doctor: " + doctor);
-        doctorLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        doctorLabel.setForeground(new Color(100, 110, 120));
-        leftPanel.add(doctorLabel);
+        private void readPage() {
+            int from = nextRow;
+            CompletableFuture.supplyAsync(() -> toPrescriptions(history.page(from, PRESCRIPTION_PAGE_SIZE)))
+                .whenComplete((page, error) -> SwingUtilities.invokeLater(
+                    () -> pageRead(from, error == null ? page : new ArrayList<>())));
+        }
 
-        card.add(leftPanel, BorderLayout.CENTER);
+        private void pageRead(int from, List<Prescription> page) {
+            if (page.isEmpty() && ++attempts < PAGE_ATTEMPTS) {
+                // Rows are there but none came back; the file may be briefly unreadable
+                Timer retry = new Timer(RETRY_MILLIS, e -> readPage());
+                retry.setRepeats(false);
+                retry.start();
+                return;
+            }
+            if (page.isEmpty()) {
+                System.err.println("Skipped unreadable prescriptions " + from + " to "
+                    + Math.min(history.size(), from + PRESCRIPTION_PAGE_SIZE));
+            }
+            attempts = 0;
+            nextRow = from + PRESCRIPTION_PAGE_SIZE;
+            wanted -= page.size();
+            if (!page.isEmpty()) {
+                int first = loaded.size();
+                loaded.addAll(page);
+                fireIntervalAdded(this, first, loaded.size() - 1);
+            }
+            if (wanted > 0 && nextRow < history.size()) {
+                readPage();
+            } else {
+                loading = false;
+            }
+        }
+    }
 
-        JLabel badge = new JLabel("Rx");
-        badge.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        badge.setForeground(BRAND_BLUE);
-        badge.setHorizontalAlignment(SwingConstants.CENTER);
-        badge.setPreferredSize(new Dimension(60, 80));
-        card.add(badge, BorderLayout.EAST);
+    /**
+     * Paints each prescription with one reused card (date, medication,
+     * dosage, doctor and an Rx badge).
+     */
+    private static class PrescriptionCellRenderer extends JPanel implements ListCellRenderer<Prescription> {
+        private static final long serialVersionUID = 1L;
+        static final int ROW_HEIGHT = 140;
+
+        private final JLabel dateLabel = new JLabel();
+        private final JLabel medLabel = new JLabel();
+        private final JLabel dosageLabel = new JLabel();
+        private final JLabel doctorLabel = new JLabel();
+
+        PrescriptionCellRenderer() {
+            super(new BorderLayout());
+            setOpaque(false);
+            setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0)); // Gap between cards
+
+            JPanel card = new JPanel(new BorderLayout());
+            card.setBorder(BorderFactory.createCompoundBorder(
+                new LineBorder(LIGHT_BORDER, 2),
+                BorderFactory.createEmptyBorder(15, 20, 15, 20)
+            ));
+            card.setBackground(CARD_BACKGROUND);
+
+            JPanel leftPanel = new JPanel();
+            leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.Y_AXIS));
+            leftPanel.setOpaque(false);
+
+            dateLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+            dateLabel.setForeground(DARK_BLUE);
+            leftPanel.add(dateLabel);
+
+            medLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            medLabel.setForeground(DARK_BLUE);
+            leftPanel.add(medLabel);
+
+            dosageLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            dosageLabel.setForeground(new Color(100, 110, 120));
+            leftPanel.add(dosageLabel);
+
+            doctorLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            doctorLabel.setForeground(new Color(100, 110, 120));
+            leftPanel.add(doctorLabel);
+
+            card.add(leftPanel, BorderLayout.CENTER);
+
+            JLabel badge = new JLabel("Rx");
+            badge.setFont(new Font("Segoe UI", Font.BOLD, 20));
+            badge.setForeground(BRAND_BLUE);
+            badge.setHorizontalAlignment(SwingConstants.CENTER);
+            badge.setPreferredSize(new Dimension(60, 80));
+            card.add(badge, BorderLayout.EAST);
+
+            add(card, BorderLayout.CENTER);
+        }
 
-        return card;
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Prescription> list, Prescription rx,
+                int index, boolean isSelected, boolean cellHasFocus) {
+            dateLabel.setText("Date: " + rx.date);
+            medLabel.setText("Medication: " + rx.medication);
+            dosageLabel.setText("Dosage: " + rx.dosage);
+            doctorLabel.setText("Doctor: " + rx.doctor);
+            return this;
+        }
     }
 
     private JPanel createPlaceholderPanel(String contentText) {
@@ -0,0 +1,298 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends records to the frontend's CSV and log files through one
+ * background writer that keeps a FileChannel open per file.
+ *
+ * Records can be queued from any thread. Everything queued for a file
+ * while the previous batch was being written goes out with a single write
+ * call. An optional linger time ({@code -Dclinic.append.lingerMillis},
+ * default 0) makes the writer wait that long before each batch so more of
+ * a burst collects; it only pays off for callers that do not wait for
+ * their write. With {@code -Dclinic.append.fsync=true} each batch is also
+ * forced to disk before its records are reported written, so a burst
+ * shares one fsync. Channels left idle are closed again.
+ *
+ * A batch that fails, for whatever reason, fails only its own records;
+ * the writer carries on with the next. Waiting for a write gives up after
+ * {@code -Dclinic.append.awaitMillis} (default 10000).
+ */
+public final class AppendService {
+
+    private static final int MAX_BATCH_BYTES = 1 << 20;
+    private static final long IDLE_CLOSE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long AWAIT_MILLIS = Long.getLong("clinic.append.awaitMillis", 10_000);
+
+    private static final AppendService instance = new AppendService(
+        Long.getLong("clinic.append.lingerMillis", 0), Boolean.getBoolean("clinic.append.fsync"));
+
+    private static final class Record {
+        final byte[] header;
+        final byte[] bytes;
+        final boolean force;
+        final CompletableFuture<Long> written = new CompletableFuture<>();
+
+        Record(byte[] header, byte[] bytes, boolean force) {
+            this.header = header;
+            this.bytes = bytes;
+            this.force = force;
+        }
+    }
+
+    /**
+     * Queue and open channel for one file. Only the writer thread (or the
+     * shutdown flush, under the service lock) touches the channel.
+     */
+    private static final class Target {
+        final File file;
+        final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+        Record carried; // Did not fit in the previous batch
+        FileChannel channel;
+        long lastWrite;
+
+        Target(File file) {
+            this.file = file;
+        }
+    }
+
+    private final long lingerNanos;
+    private final boolean force;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final Thread writer;
+    // Set while the writer waits for work; only then do appenders wake it,
+    // so records arriving during the linger time do not cut it short
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    AppendService(long lingerMillis, boolean force) {
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.force = force;
+        this.writer = new Thread(this::run, "AppendService");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushAll, "AppendServiceShutdown"));
+    }
+
+    public static AppendService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues {@code record} to be appended to {@code fileName}. If
+     * {@code header} is not null and the file is empty when the record is
+     * written, the header goes in front of it.
+     * @return Completes with the file offset the record was written at, or
+     *         exceptionally if the write failed.
+     */
+    public CompletableFuture<Long> append(String fileName, byte[] header, byte[] record) {
+        return append(fileName, header, record, false);
+    }
+
+    /**
+     * Like {@link #append(String, byte[], byte[])}, but if {@code force} is
+     * set the future completes only once the record is on disk. Records
+     * queued together share one fsync.
+     */
+    public CompletableFuture<Long> append(String fileName, byte[] header, byte[] record, boolean force) {
+        File file = new File(fileName);
+        Target target = targets.computeIfAbsent(file.getAbsolutePath(), path -> new Target(file));
+        Record queued = new Record(header, record, force);
+        target.queue.add(queued);
+        if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+        return queued.written;
+    }
+
+    /**
+     * Like {@link #append(String, byte[], byte[])}, but waits until the
+     * record has been written.
+     * @return The file offset the record was written at.
+     */
+    public long appendAndWait(String fileName, byte[] header, byte[] record) throws IOException {
+        return await(append(fileName, header, record));
+    }
+
+    /**
+     * Waits for a record queued with {@link #append} to be written.
+     * @return The file offset the record was written at.
+     * @throws IOException if the write failed or did not finish in time.
+     */
+    public static long await(CompletableFuture<Long> written) throws IOException {
+        try {
+            return written.get(AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Write not finished after " + AWAIT_MILLIS + " ms", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the write", e);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            idle.set(true);
+            if (!hasQueued()) {
+                LockSupport.parkNanos(this, IDLE_CLOSE_NANOS);
+                if (idle.getAndSet(false)) {
+                    closeIdle(); // Timed out with nothing to write
+                }
+                continue;
+            }
+            idle.set(false);
+
+            // Let the rest of a burst arrive before writing
+            long deadline = System.nanoTime() + lingerNanos;
+            for (long remaining = lingerNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            try {
+                flushQueued();
+            } catch (Throwable e) {
+                // Never let the writer die: every later write would wait for it
+                System.err.println("[AppendService] ✗ Writer error: " + e);
+            }
+        }
+    }
+
+    private boolean hasQueued() {
+        for (Target target : targets.values()) {
+            if (target.carried != null || !target.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes one batch per file; records queued meanwhile wait for the next
+     * linger period.
+     */
+    private synchronized void flushQueued() {
+        for (Target target : targets.values()) {
+            if (target.carried != null || !target.queue.isEmpty()) {
+                flush(target);
+            }
+        }
+    }
+
+    private synchronized void flushAll() {
+        for (Target target : targets.values()) {
+            while (target.carried != null || !target.queue.isEmpty()) {
+                flush(target);
+            }
+        }
+    }
+
+    /**
+     * Writes up to MAX_BATCH_BYTES of a file's queued records in one write.
+     */
+    private void flush(Target target) {
+        List<Record> batch = new ArrayList<>();
+        int size = 0;
+        boolean forceBatch = force;
+        Record record = target.carried != null ? target.carried : target.queue.poll();
+        target.carried = null;
+        while (record != null) {
+            if (!batch.isEmpty() && size + record.bytes.length > MAX_BATCH_BYTES) {
+                target.carried = record;
+                break;
+            }
+            batch.add(record);
+            size += record.bytes.length;
+            forceBatch |= record.force;
+            record = target.queue.poll();
+        }
+
+        try {
+            FileChannel channel = open(target);
+            byte[] header = channel.size() == 0 ? batch.get(0).header : null;
+            int headerLength = header == null ? 0 : header.length;
+
+            ByteBuffer bytes = ByteBuffer.allocate(headerLength + size);
+            if (header != null) {
+                bytes.put(header);
+            }
+            for (Record r : batch) {
+                bytes.put(r.bytes);
+            }
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (forceBatch) {
+                channel.force(false);
+            }
+            target.lastWrite = System.nanoTime();
+
+            // In append mode the position is the end of what we just wrote
+            long offset = channel.position() - size;
+            for (Record r : batch) {
+                r.written.complete(offset);
+                offset += r.bytes.length;
+            }
+        } catch (Throwable e) {
+            // Fail this batch's records, whatever went wrong, so no one waits for them
+            System.err.println("Error appending to " + target.file + ": " + e);
+            close(target); // Reopened for the next batch
+            for (Record r : batch) {
+                r.written.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the file's open channel, reopening it if it was closed or the
+     * file has been deleted since.
+     */
+    private static FileChannel open(Target target) throws IOException {
+        if (target.channel != null && !target.file.exists()) {
+            close(target);
+        }
+        if (target.channel == null) {
+            target.channel = FileChannel.open(target.file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return target.channel;
+    }
+
+    private synchronized void closeIdle() {
+        long now = System.nanoTime();
+        for (Target target : targets.values()) {
+            if (target.channel != null && now - target.lastWrite >= IDLE_CLOSE_NANOS) {
+                close(target);
+            }
+        }
+    }
+
+    private static void close(Target target) {
+        if (target.channel != null) {
+            try {
+                target.channel.close();
+            } catch (IOException e) {
+                // Nothing more to write through it
+            }
+            target.channel = null;
+        }
+    }
+}
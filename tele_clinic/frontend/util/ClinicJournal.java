@@ -0,0 +1,482 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import common.EmergencyLog;
+import common.SegmentedLog;
+import util.PrescriptionFetcher.PrescriptionEntry;
+
+/**
+ * Write-ahead journal for the CSV backend, so a change that touches
+ * several files (a registration writes credentials.csv and
+ * medical_registrations.csv) is either made completely or not at all.
+ *
+ * Each change is one transaction: a list of mutations written as a single
+ * framed line to clinic_journal.log (see {@link EmergencyLog} for the
+ * framing) and forced to disk before any data file is touched. Only then
+ * are the mutations applied to the CSV and log files, through the same
+ * writers and indexes as before. A crash in between leaves a complete
+ * journal record (or a torn one, which is dropped), and the missing writes
+ * are made on the next start.
+ *
+ * A snapshot is taken at startup and whenever the journal reaches
+ * {@code -Dclinic.journal.snapshotBytes} (default 1 MB): the journal tail
+ * is applied again, the data files are forced to disk, the last sequence
+ * number is recorded in clinic_journal.snapshot, and the journal is
+ * emptied. The data files themselves are the compacted state, so recovery
+ * only ever replays what was written since the last snapshot.
+ *
+ * Emergency events are not journaled: emergency_logs.txt is framed and
+ * recovers by itself, and a press must not wait for the journal's lock and
+ * fsync. EMERGENCY records written by earlier versions are still replayed.
+ *
+ * Replaying is idempotent: a mutation whose effect is already in the data
+ * files is skipped (a known username, a registered BITS ID, a prescription
+ * row or emergency line already present). With
+ * {@code -Dclinic.journal.fsync=false} records are not forced to disk.
+ *
+ * Commits and snapshots hold clinic_journal.lock, so several terminals
+ * can share the files.
+ */
+public final class ClinicJournal {
+
+    private static final String FILE_NAME = "clinic_journal.log";
+    private static final String SNAPSHOT_FILE = "clinic_journal.snapshot";
+    private static final String LOCK_FILE = "clinic_journal.lock";
+
+    private static final String STUDENTS_CSV = "medical_registrations.csv";
+    private static final String CREDENTIALS_CSV = "credentials.csv";
+    private static final String PRESCRIPTIONS_CSV = "prescriptions.txt";
+    private static final String EMERGENCY_LOG = "emergency_logs.txt";
+
+    private static final long SNAPSHOT_BYTES = Long.getLong("clinic.journal.snapshotBytes", 1L << 20);
+    private static final boolean FSYNC = !"false".equalsIgnoreCase(System.getProperty("clinic.journal.fsync"));
+
+    private static final ClinicJournal instance = new ClinicJournal(new File(FILE_NAME), new File(SNAPSHOT_FILE), new File(LOCK_FILE));
+
+    public enum Type { STUDENT, CREDENTIAL, PRESCRIPTION, EMERGENCY }
+
+    /**
+     * One change to one data file.
+     */
+    public static final class Mutation {
+        final Type type;
+        final String[] fields;
+
+        private Mutation(Type type, String... fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+
+        /** A registration row, in medical_registrations.csv order. */
+        public static Mutation student(String[] registration) {
+            return new Mutation(Type.STUDENT, registration.clone());
+        }
+
+        /** A login; {@code hashed} comes from {@link PasswordHasher#hash}. */
+        public static Mutation credential(String username, String hashed, String role) {
+            return new Mutation(Type.CREDENTIAL, username, hashed, role);
+        }
+
+        /** A prescription row: StudentID, Timestamp, StaffID, StaffName, Medication, Notes. */
+        public static Mutation prescription(String[] prescription) {
+            return new Mutation(Type.PRESCRIPTION, prescription.clone());
+        }
+    }
+
+    private final File journalFile;
+    private final File snapshotFile;
+    private final File lockFile;
+
+    // Where the journal ended after our last write and the sequence number
+    // written there; if the file has another length, another process wrote
+    private long knownLength = -1;
+    private long lastSequence = -1;
+    private boolean recovered;
+    // Set when applying a committed record failed; each commit then ends with a snapshot, which retries it
+    private boolean behind;
+
+    ClinicJournal(File journalFile, File snapshotFile, File lockFile) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+        this.lockFile = lockFile;
+    }
+
+    public static ClinicJournal getInstance() {
+        return instance;
+    }
+
+    /**
+     * Applies whatever the journal holds beyond the last snapshot (writes
+     * interrupted by a crash) and takes a new snapshot. Called once at
+     * startup; otherwise done before the first commit.
+     */
+    @SuppressWarnings("try")
+    public synchronized void recover() throws IOException {
+        try (FileChannel lock = lock()) {
+            snapshot();
+            recovered = true;
+        }
+    }
+
+    /**
+     * Writes {@code mutations} to the journal as one transaction and then
+     * applies them to the data files. A credential for a username that is
+     * already registered rejects the whole transaction.
+     *
+     * Once the record is in the journal the transaction is committed: if
+     * applying it fails, the error is logged and the write is retried by the
+     * snapshots taken after this and later commits (or at the next start).
+     * @return false if the transaction was rejected.
+     * @throws IOException if the journal record could not be written; nothing was changed.
+     */
+    @SuppressWarnings("try")
+    public synchronized boolean commit(Mutation... mutations) throws IOException {
+        try (FileChannel lock = lock()) {
+            if (!recovered) {
+                snapshot();
+                recovered = true;
+            }
+            for (Mutation mutation : mutations) {
+                if (mutation.type == Type.CREDENTIAL && isRegistered(mutation.fields[0])) {
+                    return false; // User already exists
+                }
+            }
+
+            long length;
+            try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long sequence = nextSequence(channel);
+                ByteBuffer record = ByteBuffer.wrap(EmergencyLog.frame(sequence, encode(mutations)));
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                if (FSYNC) {
+                    channel.force(false);
+                }
+                length = channel.size();
+                knownLength = length;
+                lastSequence = sequence;
+            }
+
+            for (Mutation mutation : mutations) {
+                if (!apply(mutation)) {
+                    System.err.println("[ClinicJournal] ✗ " + mutation.type + " not written; retrying from the journal");
+                    behind = true;
+                }
+            }
+            if (behind || length >= SNAPSHOT_BYTES) {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    // The transaction is in; the journal just stays longer
+                    System.err.println("[ClinicJournal] ✗ Snapshot failed: " + e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Sequence number for the next record: one past the last one in the
+     * journal, or past the snapshot if the journal is empty. The journal's
+     * tail is only scanned if another process has written since our last
+     * commit (which also drops a record torn by a crash).
+     */
+    private long nextSequence(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size != knownLength) {
+            lastSequence = size == 0 ? -1 : EmergencyLog.recover(journalFile);
+            knownLength = journalFile.length();
+        }
+        return Math.max(lastSequence, readSnapshot().sequence) + 1;
+    }
+
+    /**
+     * Applies the journal again, forces the data files to disk, records the
+     * journal's last sequence number in the snapshot file and empties the
+     * journal. Called with the lock held.
+     */
+    private void snapshot() throws IOException {
+        Snapshot previous = readSnapshot();
+        long last = previous.sequence;
+        int replayed = 0;
+        if (journalFile.exists()) {
+            EmergencyLog.recover(journalFile); // A torn last record was never committed
+            Set<String> emergencies = null;
+            List<EmergencyLog.Entry> entries = new ArrayList<>();
+            EmergencyLog.read(journalFile, 0, entries::add);
+            for (EmergencyLog.Entry entry : entries) {
+                if (!entry.isIntact() || entry.getSequence() <= previous.sequence) {
+                    continue;
+                }
+                for (Mutation mutation : decode(entry.getPayload())) {
+                    if (mutation.type == Type.EMERGENCY && emergencies == null) {
+                        emergencies = emergencyEntriesSince(previous.emergencyPosition);
+                    }
+                    if (!isApplied(mutation, emergencies)) {
+                        if (!apply(mutation)) {
+                            // Keep the journal so the write is tried again
+                            throw new IOException("Could not replay journal record " + entry.getSequence());
+                        }
+                        replayed++;
+                    }
+                }
+                last = Math.max(last, entry.getSequence());
+            }
+        }
+
+        force(STUDENTS_CSV);
+        force(CREDENTIALS_CSV);
+        force(PRESCRIPTIONS_CSV);
+        SegmentedLog emergencyLog = SegmentedLog.forFile(new File(EMERGENCY_LOG));
+        force(emergencyLog.activeFile().getPath());
+
+        writeSnapshot(new Snapshot(last, emergencyLog.end()));
+        if (journalFile.exists()) {
+            try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        }
+        knownLength = 0;
+        lastSequence = -1;
+        behind = false;
+        if (replayed > 0) {
+            System.out.println("[ClinicJournal] ✓ Replayed " + replayed + " journaled writes");
+        }
+    }
+
+    /**
+     * Whether the data files already reflect {@code mutation}.
+     */
+    private static boolean isApplied(Mutation mutation, Set<String> emergencies) {
+        String[] fields = mutation.fields;
+        switch (mutation.type) {
+            case STUDENT:
+                // The first registration for an ID is the one looked up
+                return StudentRegistryIndex.forFile(STUDENTS_CSV).get(fields[1]) != null;
+            case CREDENTIAL:
+                return isRegistered(fields[0]);
+            case PRESCRIPTION:
+                return hasPrescription(fields);
+            case EMERGENCY:
+                return emergencies.contains(fields[0]);
+            default:
+                throw new IllegalStateException("Unknown mutation " + mutation.type);
+        }
+    }
+
+    /**
+     * Makes one mutation through the writer that owns its file.
+     * @return false if the write failed.
+     */
+    private static boolean apply(Mutation mutation) {
+        String[] fields = mutation.fields;
+        switch (mutation.type) {
+            case STUDENT:
+                return MedicalDataWriter.writeDataToCsv(fields);
+            case CREDENTIAL:
+                // false here means the username exists, which is what we want
+                new CredentialManager().addHashedCredential(fields[0], fields[1], fields[2]);
+                return isRegistered(fields[0]);
+            case PRESCRIPTION:
+                return PrescriptionWriter.writeDataToCsv(fields);
+            case EMERGENCY:
+                try {
+                    EmergencyLogWriter.writeEntry(fields[0]);
+                    return true;
+                } catch (IOException e) {
+                    System.err.println("Error writing emergency log: " + e.getMessage());
+                    return false;
+                }
+            default:
+                throw new IllegalStateException("Unknown mutation " + mutation.type);
+        }
+    }
+
+    private static boolean isRegistered(String username) {
+        return new File(CREDENTIALS_CSV).exists() && CredentialIndex.forFile(CREDENTIALS_CSV).contains(username);
+    }
+
+    /**
+     * Looks for the row among the student's prescriptions, newest first.
+     */
+    private static boolean hasPrescription(String[] fields) {
+        PrescriptionFetcher.History history = PrescriptionFetcher.openHistory(fields[0]);
+        for (int from = 0; from < history.size(); from += 50) {
+            for (PrescriptionEntry entry : history.page(from, 50)) {
+                if (entry.timestamp.equals(fields[1].trim()) && entry.staffId.equals(fields[2].trim())
+                        && entry.staffName.equals(fields[3].trim()) && entry.medication.equals(fields[4].trim())
+                        && entry.notes.equals(fields[5].trim())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The emergency log lines written since {@code from}.
+     */
+    private static Set<String> emergencyEntriesSince(SegmentedLog.Position from) throws IOException {
+        Set<String> entries = new HashSet<>();
+        SegmentedLog log = SegmentedLog.forFile(new File(EMERGENCY_LOG));
+        log.read(from == null ? log.start() : from,
+            (segment, offset) -> EmergencyLog.read(segment, offset, entry -> entries.add(entry.getPayload())));
+        return entries;
+    }
+
+    private static void force(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (file.exists()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Record payload: for each mutation its type, field count and fields,
+     * separated by tabs, with backslash, tab and line breaks escaped.
+     */
+    static String encode(Mutation... mutations) {
+        StringBuilder payload = new StringBuilder();
+        for (Mutation mutation : mutations) {
+            if (payload.length() > 0) {
+                payload.append('\t');
+            }
+            payload.append(mutation.type).append('\t').append(mutation.fields.length);
+            for (String field : mutation.fields) {
+                payload.append('\t');
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    switch (c) {
+                        case '\\': payload.append("\\\\"); break;
+                        case '\t': payload.append("\\t"); break;
+                        case '\n': payload.append("\\n"); break;
+                        case '\r': payload.append("\\r"); break;
+                        default: payload.append(c);
+                    }
+                }
+            }
+        }
+        return payload.toString();
+    }
+
+    static List<Mutation> decode(String payload) throws IOException {
+        String[] parts = payload.split("\t", -1);
+        List<Mutation> mutations = new ArrayList<>();
+        int i = 0;
+        try {
+            while (i < parts.length) {
+                Type type = Type.valueOf(parts[i]);
+                int count = Integer.parseInt(parts[i + 1]);
+                String[] fields = new String[count];
+                for (int f = 0; f < count; f++) {
+                    fields[f] = unescape(parts[i + 2 + f]);
+                }
+                mutations.add(new Mutation(type, fields));
+                i += 2 + count;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed journal record: " + payload, e);
+        }
+        return mutations;
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder value = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                value.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * The contents of clinic_journal.snapshot: the last sequence number
+     * whose writes are on disk in the data files, and where the emergency
+     * log ended at that point.
+     */
+    private static final class Snapshot {
+        final long sequence;
+        final SegmentedLog.Position emergencyPosition;
+
+        Snapshot(long sequence, SegmentedLog.Position emergencyPosition) {
+            this.sequence = sequence;
+            this.emergencyPosition = emergencyPosition;
+        }
+    }
+
+    private Snapshot readSnapshot() throws IOException {
+        if (!snapshotFile.exists()) {
+            return new Snapshot(-1, null);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(snapshotFile.toPath())) {
+            properties.load(in);
+        }
+        try {
+            String[] position = properties.getProperty("emergencyLog", "0:0").split(":");
+            return new Snapshot(Long.parseLong(properties.getProperty("sequence", "-1")),
+                new SegmentedLog.Position(Integer.parseInt(position[0]), Long.parseLong(position[1])));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed journal snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Replaces the snapshot file in one step.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("sequence", Long.toString(snapshot.sequence));
+        properties.setProperty("emergencyLog", snapshot.emergencyPosition.toString());
+        properties.setProperty("time", Long.toString(System.currentTimeMillis()));
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            properties.store(out, "Clinic journal snapshot: data files hold every write up to this sequence");
+        }
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Takes the inter-process lock for commits and snapshots. Closing the
+     * returned channel releases it.
+     */
+    private FileChannel lock() throws IOException {
+        FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
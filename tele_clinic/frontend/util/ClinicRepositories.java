@@ -0,0 +1,26 @@
+package util;
+
+import java.util.Locale;
+
+/**
+ * Opens the {@link ClinicRepository} backend named by
+ * {@code -Dclinic.repository} the first time it is asked for.
+ */
+final class ClinicRepositories {
+
+    static final ClinicRepository instance = open(System.getProperty("clinic.repository", "csv"));
+
+    private ClinicRepositories() {
+    }
+
+    static ClinicRepository open(String backend) {
+        switch (backend.trim().toLowerCase(Locale.ROOT)) {
+            case "csv":
+                return new CsvClinicRepository();
+            case "jdbc":
+                return JdbcClinicRepository.open(System.getProperty("clinic.repository.url", JdbcClinicRepository.DEFAULT_URL));
+            default:
+                throw new IllegalArgumentException("Unknown clinic.repository backend: " + backend);
+        }
+    }
+}
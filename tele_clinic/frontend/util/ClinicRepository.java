@@ -0,0 +1,114 @@
+package util;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import util.PrescriptionFetcher.PrescriptionEntry;
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * Storage for students, credentials, prescriptions and emergency events,
+ * so the UI does not depend on where they are kept.
+ *
+ * The backend is chosen with {@code -Dclinic.repository}:
+ * <ul>
+ * <li>{@code csv} (default): the CSV and log files next to the application,
+ *     through the existing writers, fetchers and their indexes
+ *     ({@link CsvClinicRepository})</li>
+ * <li>{@code jdbc}: an embedded database reached through JDBC, such as H2
+ *     ({@link JdbcClinicRepository}); the database URL is taken from
+ *     {@code -Dclinic.repository.url}</li>
+ * </ul>
+ */
+public interface ClinicRepository {
+
+    /**
+     * Looks up a student's registration by BITS ID (case-insensitive).
+     */
+    Optional<StudentMedicalData> findStudent(String bitsId);
+
+    /**
+     * Runs {@link #findStudent} on a background thread, so UI code never
+     * blocks on a lookup.
+     */
+    default CompletableFuture<Optional<StudentMedicalData>> findStudentAsync(String bitsId) {
+        return CompletableFuture.supplyAsync(() -> findStudent(bitsId));
+    }
+
+    /**
+     * Stores a student's registration.
+     * @param registration The 12 registration fields, in the order of medical_registrations.csv:
+     *        FullName, BITS_ID, Gender, BITS_Email, MobileNo, TelegramNo, BloodType, Allergies,
+     *        ChronicIllnesses, InsuranceType, GuardianName, GuardianContact.
+     * @return true if the registration was stored.
+     */
+    boolean addStudent(String[] registration);
+
+    /**
+     * Checks a username and password.
+     * @return The user's role (e.g. "Student", "Nurse" or "Admin") if they match.
+     */
+    Optional<String> verifyCredentials(String username, String password);
+
+    /**
+     * Registers a user; the password is stored hashed.
+     * @return false if the username is already registered or the write failed.
+     */
+    boolean addCredential(String username, String password, String role);
+
+    /**
+     * Registers a student's login and medical registration together: either
+     * both are stored or neither is.
+     * @param registration The 12 registration fields, as for {@link #addStudent}.
+     * @return false if the username is already registered or the write failed.
+     */
+    boolean registerStudent(String username, String password, String role, String[] registration);
+
+    /**
+     * Stores a prescription.
+     * @param prescription StudentID, Timestamp, StaffID, StaffName, Medication, Notes.
+     * @return true if the prescription was stored.
+     */
+    boolean addPrescription(String[] prescription);
+
+    /**
+     * A student's prescription history as it was when opened, newest
+     * first. Prescriptions stored later are not in it, so paging through
+     * it never repeats or skips a row; open it again to see them.
+     */
+    interface PrescriptionHistory {
+
+        /**
+         * Number of prescriptions in the history.
+         */
+        int size();
+
+        /**
+         * Reads part of the history.
+         * @param from Number of newer prescriptions to skip.
+         * @param count Most prescriptions to return.
+         * @return The prescriptions; fewer if some rows are malformed or
+         *         could not be read, and empty past the end of the history.
+         */
+        List<PrescriptionEntry> page(int from, int count);
+    }
+
+    /**
+     * Opens a student's prescription history for paged reading.
+     */
+    PrescriptionHistory openPrescriptionHistory(String bitsId);
+
+    /**
+     * Records an emergency call, which the Notifier relays to the student's guardian.
+     * @return true if the event was recorded.
+     */
+    boolean logEmergency(String bitsId, String fullName);
+
+    /**
+     * The repository selected by {@code -Dclinic.repository}, opened on first use.
+     */
+    static ClinicRepository getInstance() {
+        return ClinicRepositories.instance;
+    }
+}
@@ -0,0 +1,239 @@
+package util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.CsvReader;
+import common.CsvRow;
+
+/**
+ * In-memory index of credentials.csv keyed by username.
+ * Like {@link StudentRegistryIndex}, it is built once and then kept current
+ * incrementally: registrations made through {@link CredentialManager} in this
+ * process are added as they are written, and rows appended by another
+ * terminal are picked up by reading only the new tail of the file. A login
+ * attempt therefore costs a hash lookup instead of a scan of the whole file.
+ */
+final class CredentialIndex {
+
+    /**
+     * One credentials row.
+     */
+    static final class Credential {
+        final String password;
+        final String role;
+
+        Credential(String password, String role) {
+            this.password = password;
+            this.role = role;
+        }
+    }
+
+    private final String path;
+    // A username normally has one row; older files may repeat it with another password.
+    // Lists are replaced, never modified, so readers need no lock.
+    private final Map<String, List<Credential>> byUsername;
+
+    private volatile CsvTail tail;
+    private volatile long lastModified;
+
+    private static volatile CredentialIndex current;
+
+    private CredentialIndex(File file, CsvTail tail, long lastModified, Map<String, List<Credential>> byUsername) {
+        this.path = file.getAbsolutePath();
+        this.tail = tail;
+        this.lastModified = lastModified;
+        this.byUsername = byUsername;
+    }
+
+    /**
+     * Returns an index that matches the file on disk, catching up with
+     * appended rows or rebuilding it if the file has changed since it was
+     * last loaded.
+     */
+    static CredentialIndex forFile(String fileName) {
+        File file = new File(fileName);
+        CredentialIndex index = current;
+        if (index != null && index.matches(file)) {
+            return index;
+        }
+        synchronized (CredentialIndex.class) {
+            index = current;
+            if (index != null && index.matches(file)) {
+                return index;
+            }
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || !index.catchUp(file)) {
+                index = load(file);
+                current = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Called by {@link CredentialManager} after appending a row at
+     * {@code rowOffset}. If the index covers the file exactly up to there,
+     * the row is added without touching the disk; otherwise the next lookup
+     * catches up from the file.
+     * @param rowBytes The row exactly as written, line terminator included.
+     */
+    static void recordAppended(String fileName, long rowOffset, byte[] rowBytes, String username, String password, String role) {
+        File file = new File(fileName);
+        synchronized (CredentialIndex.class) {
+            CredentialIndex index = current;
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || index.tail.length() != rowOffset) {
+                return;
+            }
+            index.add(username, new Credential(password, role));
+            index.lastModified = file.lastModified();
+            index.tail = index.tail.advance(rowBytes);
+        }
+    }
+
+    /**
+     * Called by {@link CredentialManager} after rewriting the whole file
+     * with {@code rows} (header first), under its write lock. The index is
+     * rebuilt from those rows instead of being read back from the disk.
+     */
+    static void recordRewritten(String fileName, List<String[]> rows) {
+        File file = new File(fileName);
+        synchronized (CredentialIndex.class) {
+            CredentialIndex index = new CredentialIndex(file, CsvTail.at(file, file.length()), file.lastModified(),
+                new ConcurrentHashMap<String, List<Credential>>());
+            for (int i = 1; i < rows.size(); i++) {
+                String[] fields = rows.get(i);
+                if (fields.length >= 3) {
+                    index.add(fields[0].trim(), new Credential(fields[1].trim(), fields[2].trim()));
+                }
+            }
+            current = index;
+        }
+    }
+
+    /**
+     * Drops the index after the file was rewritten in place, so the next
+     * lookup reloads it.
+     */
+    static void invalidate() {
+        synchronized (CredentialIndex.class) {
+            current = null;
+        }
+    }
+
+    /**
+     * Returns the first row with this username whose stored password (hashed
+     * or, for rows not yet migrated, plain) matches {@code password}.
+     */
+    Credential verify(String username, String password) {
+        List<Credential> credentials = byUsername.get(username);
+        if (credentials == null) {
+            PasswordHasher.verifyDummy(password); // As slow as a known username
+            return null;
+        }
+        for (Credential credential : credentials) {
+            if (PasswordHasher.verify(password, credential.password)) {
+                return credential;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces a row's plain password with its hash in memory, ahead of the
+     * file; {@link CredentialManager} rewrites the file later.
+     */
+    void migrate(String username, Credential credential, String hashed) {
+        synchronized (CredentialIndex.class) {
+            List<Credential> existing = byUsername.get(username);
+            if (existing == null) {
+                return;
+            }
+            List<Credential> credentials = new ArrayList<>(existing);
+            int i = credentials.indexOf(credential);
+            if (i >= 0) {
+                credentials.set(i, new Credential(hashed, credential.role));
+                byUsername.put(username, Collections.unmodifiableList(credentials));
+            }
+        }
+    }
+
+    boolean contains(String username) {
+        return byUsername.containsKey(username);
+    }
+
+    int size() {
+        return byUsername.size();
+    }
+
+    private boolean matches(File file) {
+        return file.length() == tail.length() && file.lastModified() == lastModified;
+    }
+
+    private void add(String username, Credential credential) {
+        List<Credential> existing = byUsername.get(username);
+        if (existing == null) {
+            byUsername.put(username, Collections.singletonList(credential));
+        } else {
+            List<Credential> credentials = new ArrayList<>(existing);
+            credentials.add(credential);
+            byUsername.put(username, Collections.unmodifiableList(credentials));
+        }
+    }
+
+    /**
+     * Indexes rows appended since the last load by reading only the new tail.
+     * @return false if the file did not simply grow, so a full reload is needed.
+     */
+    private boolean catchUp(File file) {
+        long size = file.length();
+        long modified = file.lastModified();
+        CsvTail indexed;
+        try {
+            indexed = tail.read(file, size, row -> {
+                if (row.size() >= 3) {
+                    add(row.getTrimmed(0), new Credential(row.getTrimmed(1), row.getTrimmed(2)));
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (indexed == null) {
+            return false;
+        }
+        lastModified = modified;
+        tail = indexed;
+        return true;
+    }
+
+    private static CredentialIndex load(File file) {
+        // Stat before reading so a concurrent append is picked up on the next lookup
+        long size = file.length();
+        long modified = file.lastModified();
+        Map<String, List<Credential>> byUsername = new ConcurrentHashMap<>();
+        CredentialIndex index = new CredentialIndex(file, null, modified, byUsername);
+
+        try (CsvReader reader = new CsvReader(new FileReader(file))) {
+            CsvRow row = new CsvRow();
+            reader.next(row); // Skip the header
+
+            while (reader.next(row)) {
+                if (row.size() >= 3) {
+                    index.add(row.getTrimmed(0), new Credential(row.getTrimmed(1), row.getTrimmed(2)));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Never cache a failed read; retry on the next login
+            return new CredentialIndex(file, CsvTail.at(file, -1), -1, new ConcurrentHashMap<String, List<Credential>>());
+        }
+        index.tail = CsvTail.at(file, size);
+        return index;
+    }
+}
@@ -1,29 +1,63 @@
 package util;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import common.CsvReader;
+import common.CsvRow;
 
 /**
  * Manages user credentials (ID, Password, Role) stored in a CSV file.
  * Demonstrates basic file I/O and exception handling (try-with-resources).
+ * Passwords are stored as salted hashes (see {@link PasswordHasher}); rows
+ * still holding a plain password are rehashed on their next successful login.
+ * The login index takes the hash at once; the file is rewritten shortly
+ * after, once for all the passwords migrated in the meantime.
  */
 public class CredentialManager {
     private static final String FILE_PATH = "credentials.csv";
     private static final String DELIMITER = ",";
     private static final String CSV_HEADER = "Username,Password,Role";
+    // Writers lock a separate file: credentials.csv itself is replaced when passwords
+    // are migrated, and on Windows a lock on it would also block logins from reading
+    private static final String LOCK_PATH = FILE_PATH + ".lock";
+    private static final long MIGRATION_DELAY_MILLIS = 2_000;
+
+    // Username -> {stored plain password, its hash}, not yet written to the file;
+    // guarded by the class lock
+    private static final Map<String, String[]> pendingMigrations = new HashMap<>();
+    private static final ScheduledExecutorService migrationWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "CredentialMigrationWriter");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Ensures the credential file exists and has a header. Creates mock data if new.
      */
     private void ensureFileExists() {
-        if (!Files.exists(Paths.get(FILE_PATH))) {
+        if (!new File(FILE_PATH).exists()) {
             try (PrintWriter pw = new PrintWriter(new FileWriter(FILE_PATH))) {
                 pw.println(CSV_HEADER);
             } catch (IOException e) {
@@ -34,52 +68,181 @@ public class CredentialManager {
     
     /**
      * Verifies if the provided username and password exist in the CSV file.
+     * Served from an in-memory index of the file that is reloaded only when
+     * the file changes, so login attempts do not re-read it.
      * @return An Optional containing the Role (e.g., "Student", "Nurse", or "Admin") if found.
      */
     public Optional<String> verifyCredentials(String username, String password) {
         ensureFileExists();
+        CredentialIndex index = CredentialIndex.forFile(FILE_PATH);
+        CredentialIndex.Credential credential = index.verify(username, password);
+        if (credential == null) {
+            return Optional.empty();
+        }
+        if (PasswordHasher.needsRehash(credential.password)) {
+            String hashed = PasswordHasher.hash(password);
+            index.migrate(username, credential, hashed);
+            scheduleMigration(username, credential.password, hashed);
+        }
+        return Optional.of(credential.role);
+    }
+    
+    /**
+     * Adds a new user credential to the file, unless the username is already
+     * registered. The duplicate check is a lookup in the in-memory index.
+     * Several clinic terminals may share the file, so the check is repeated
+     * and the row appended while holding an OS-level lock.
+     * @return true if the credential was added, false if the username exists or the write failed.
+     */
+    public boolean addCredential(String username, String password, String role) {
+        ensureFileExists();
+        if (CredentialIndex.forFile(FILE_PATH).contains(username)) {
+            return false; // User already exists
+        }
+        String hashed = PasswordHasher.hash(password); // Deliberately slow; done before locking
+        return addHashedCredential(username, hashed, role);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            reader.readLine(); // Skip the header
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(DELIMITER);
-                if (parts.length >= 3) {
-                    // Note: Removed redundant replace("\"", "") calls as input data doesn't have quotes
-                    String storedUsername = parts[0].trim();
-                    String storedPassword = parts[1].trim();
-                    String storedRole = parts[2].trim();
-                    
-                    if (storedUsername.equals(username) && storedPassword.equals(password)) {
-                        return Optional.of(storedRole); // Match found
-                    }
+    /**
+     * Like {@link #addCredential}, for a password already hashed with
+     * {@link PasswordHasher#hash} (used by {@link ClinicJournal}, whose
+     * records hold the hash, never the password).
+     */
+    @SuppressWarnings("try")
+    boolean addHashedCredential(String username, String hashed, String role) {
+        ensureFileExists();
+
+        // FileLock is per process; serialize this JVM's threads first
+        synchronized (CredentialManager.class) {
+            try (FileChannel lock = lockFile();
+                 FileChannel channel = FileChannel.open(Paths.get(FILE_PATH), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                // Another terminal may have registered since the check above;
+                // catch up with the rows it appended, under the lock
+                if (CredentialIndex.forFile(FILE_PATH).contains(username)) {
+                    return false;
+                }
+
+                long offset = channel.size();
+                StringBuilder line = new StringBuilder();
+                if (offset > 0 && !endsWithNewline(channel, offset)) {
+                    line.append(System.lineSeparator());
+                }
+                line.append(csvField(username)).append(DELIMITER)
+                    .append(csvField(hashed)).append(DELIMITER)
+                    .append(csvField(role)).append(System.lineSeparator());
+
+                byte[] row = line.toString().getBytes(Charset.defaultCharset());
+                ByteBuffer bytes = ByteBuffer.wrap(row);
+                long position = offset;
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
                 }
+                CredentialIndex.recordAppended(FILE_PATH, offset, row, username, hashed, role);
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return Optional.empty(); // No match found
     }
-    
+
     /**
-     * Adds a new user credential to the file.
+     * Queues a migrated password for the file. The first one queued
+     * schedules a rewrite, which then takes every one queued by then, so a
+     * burst of logins right after an upgrade rewrites the file once.
      */
-     public boolean addCredential(String username, String password, String role) {
-        ensureFileExists();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_PATH, true))) {
-            // Simple check to prevent duplicates
-            if (verifyCredentials(username, "nonexistent").isPresent()) {
-                return false; // User already exists
+    private static void scheduleMigration(String username, String stored, String hashed) {
+        synchronized (CredentialManager.class) {
+            if (pendingMigrations.isEmpty()) {
+                migrationWriter.schedule(CredentialManager::writeMigrations, MIGRATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
             }
-            
-            String line = username + DELIMITER + password + DELIMITER + role;
-            writer.write(line);
-            writer.newLine();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            pendingMigrations.put(username, new String[] { stored, hashed });
+        }
+    }
+
+    /**
+     * Replaces the stored password values queued by
+     * {@link #scheduleMigration} by rewriting the file to a temporary copy
+     * and moving it into place, under the same lock as registrations. Rows
+     * another terminal migrated first are left alone. The login index is
+     * rebuilt from the rows written; after a failure it is dropped instead,
+     * so the old values come back and are retried on their next login.
+     */
+    @SuppressWarnings("try")
+    private static void writeMigrations() {
+        File file = new File(FILE_PATH);
+        File temp = new File(FILE_PATH + ".tmp");
+        synchronized (CredentialManager.class) {
+            Map<String, String[]> migrations = new HashMap<>(pendingMigrations);
+            pendingMigrations.clear();
+            try (FileChannel lock = lockFile()) {
+                List<String[]> rows = new ArrayList<>();
+                boolean changed = false;
+                try (CsvReader reader = new CsvReader(new FileReader(file))) {
+                    CsvRow row = new CsvRow();
+                    while (reader.next(row)) {
+                        String[] fields = row.toArray();
+                        String[] migration = reader.recordNumber() > 1 && fields.length >= 3
+                            ? migrations.get(fields[0].trim()) : null;
+                        if (migration != null && fields[1].trim().equals(migration[0])) {
+                            fields[1] = migration[1];
+                            changed = true;
+                        }
+                        rows.add(fields);
+                    }
+                }
+                if (!changed) {
+                    return;
+                }
+
+                try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp.toPath()), Charset.defaultCharset()))) {
+                    for (String[] fields : rows) {
+                        for (int i = 0; i < fields.length; i++) {
+                            if (i > 0) {
+                                writer.write(DELIMITER);
+                            }
+                            writer.write(csvField(fields[i]));
+                        }
+                        writer.newLine();
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                CredentialIndex.recordRewritten(FILE_PATH, rows);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not migrate " + migrations.size() + " stored passwords: " + e.getMessage());
+                temp.delete();
+                CredentialIndex.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Takes the inter-process lock that guards writes to the credentials file.
+     * Closing the returned channel releases it.
+     */
+    private static FileChannel lockFile() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(LOCK_PATH), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean endsWithNewline(FileChannel channel, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    // Quote a field only if it would otherwise break the row
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
         }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
     }
-}
\ No newline at end of file
+}
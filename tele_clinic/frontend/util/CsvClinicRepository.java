@@ -0,0 +1,99 @@
+package util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import util.ClinicJournal.Mutation;
+import util.PrescriptionFetcher.PrescriptionEntry;
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * {@link ClinicRepository} over the application's CSV and log files:
+ * medical_registrations.csv, credentials.csv, prescriptions.txt and
+ * emergency_logs.txt. Lookups go through the class that already owns the
+ * file and its in-memory index. Every change to the CSV files is first
+ * written to the {@link ClinicJournal}, which then applies it through the
+ * same writers, so a change spanning several files survives a crash as a
+ * whole. Emergency events bypass the journal: emergency_logs.txt recovers
+ * on its own, and a press must not wait for the journal's lock and fsync.
+ */
+public class CsvClinicRepository implements ClinicRepository {
+
+    private final CredentialManager credentialManager = new CredentialManager();
+    private final ClinicJournal journal = ClinicJournal.getInstance();
+
+    /**
+     * Finishes any change a crash interrupted (see {@link ClinicJournal#recover}).
+     */
+    public CsvClinicRepository() {
+        try {
+            journal.recover();
+        } catch (IOException e) {
+            System.err.println("Error recovering clinic journal: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<StudentMedicalData> findStudent(String bitsId) {
+        return StudentDataFetcher.fetchStudentData(bitsId);
+    }
+
+    @Override
+    public CompletableFuture<Optional<StudentMedicalData>> findStudentAsync(String bitsId) {
+        return StudentDataFetcher.fetchStudentDataAsync(bitsId);
+    }
+
+    @Override
+    public boolean addStudent(String[] registration) {
+        return commit("student", Mutation.student(registration));
+    }
+
+    @Override
+    public Optional<String> verifyCredentials(String username, String password) {
+        return credentialManager.verifyCredentials(username, password);
+    }
+
+    @Override
+    public boolean addCredential(String username, String password, String role) {
+        String hashed = PasswordHasher.hash(password); // Deliberately slow; done outside the journal lock
+        return commit("credential", Mutation.credential(username, hashed, role));
+    }
+
+    @Override
+    public boolean registerStudent(String username, String password, String role, String[] registration) {
+        String hashed = PasswordHasher.hash(password);
+        return commit("registration", Mutation.credential(username, hashed, role), Mutation.student(registration));
+    }
+
+    @Override
+    public boolean addPrescription(String[] prescription) {
+        return commit("prescription", Mutation.prescription(prescription));
+    }
+
+    @Override
+    public PrescriptionHistory openPrescriptionHistory(String bitsId) {
+        return PrescriptionFetcher.openHistory(bitsId);
+    }
+
+    /**
+     * Written straight to emergency_logs.txt, as durable as
+     * {@code -Dclinic.emergency.durability} asks: its framed lines already
+     * survive a crash, and a press should not queue behind another
+     * terminal's registration or a journal snapshot.
+     */
+    @Override
+    public boolean logEmergency(String bitsId, String fullName) {
+        return EmergencyLogWriter.logAndNotifyEmergency(bitsId, fullName);
+    }
+
+    private boolean commit(String what, Mutation... mutations) {
+        try {
+            return journal.commit(mutations);
+        } catch (IOException e) {
+            System.err.println("Error journaling " + what + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
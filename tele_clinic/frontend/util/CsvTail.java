@@ -0,0 +1,205 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import common.CsvReader;
+import common.CsvRow;
+
+/**
+ * How far an in-memory index has read an append-only CSV file, so it can
+ * catch up by parsing only the rows appended since.
+ *
+ * Besides the length, the last bytes of the indexed prefix are remembered.
+ * If the file was rewritten rather than appended to (a hand edit, or a
+ * password migration), those bytes no longer sit at the same offset and
+ * {@link #read} reports that the file must be re-read in full.
+ */
+final class CsvTail {
+
+    private static final int BOUNDARY_BYTES = 64;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final long length;
+    private final byte[] boundary; // Last bytes before length, ending with '\n'
+
+    private CsvTail(long length, byte[] boundary) {
+        this.length = length;
+        this.boundary = boundary;
+    }
+
+    /**
+     * Position at {@code length} bytes into {@code file}, taken right after
+     * the prefix was indexed in full.
+     */
+    static CsvTail at(File file, long length) {
+        if (length <= 0) {
+            return new CsvTail(length, NO_BYTES);
+        }
+        int count = (int) Math.min(BOUNDARY_BYTES, length);
+        byte[] boundary = new byte[count];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(length - count);
+            raf.readFully(boundary);
+        } catch (IOException e) {
+            return new CsvTail(-1, NO_BYTES); // Forces a full reload next time
+        }
+        return new CsvTail(length, boundary);
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * Position after {@code appended} was written at the current length by
+     * this process.
+     */
+    CsvTail advance(byte[] appended) {
+        return new CsvTail(length + appended.length, lastBytes(boundary, appended, appended.length));
+    }
+
+    /**
+     * Receives one complete row as raw bytes: {@code bytes[start, end)},
+     * line terminator included, which begins at {@code offset} in the file.
+     */
+    interface RawRowConsumer {
+        void accept(long offset, byte[] bytes, int start, int end);
+    }
+
+    /**
+     * Parses the complete rows between the current length and {@code size}
+     * and passes each one to {@code consumer}. A trailing row that is still
+     * being written is left for the next call.
+     * @return The new position, or null if the file did not simply grow
+     *         past this one and must be re-read in full.
+     */
+    CsvTail read(File file, long size, Consumer<CsvRow> consumer) throws IOException {
+        byte[] tail = readTail(file, size);
+        if (tail == null) {
+            return null;
+        }
+
+        int complete = completeRowsLength(tail);
+        try (CsvReader reader = new CsvReader(new InputStreamReader(
+                new ByteArrayInputStream(tail, 0, complete), Charset.defaultCharset()))) {
+            CsvRow row = new CsvRow();
+            while (reader.next(row)) {
+                consumer.accept(row);
+            }
+        }
+        return advanceBy(tail, complete);
+    }
+
+    /**
+     * Like {@link #read(File, long, Consumer)}, but passes each row unparsed
+     * together with its offset, for indexes that point into the file.
+     */
+    CsvTail readRaw(File file, long size, RawRowConsumer consumer) throws IOException {
+        byte[] tail = readTail(file, size);
+        if (tail == null) {
+            return null;
+        }
+
+        long end = scanRows(new ByteArrayInputStream(tail), length, consumer);
+        return advanceBy(tail, (int) (end - length));
+    }
+
+    /**
+     * Splits {@code in} into complete rows (ending with a line break outside
+     * a quoted field) and passes each to {@code consumer}, with offsets
+     * counted from {@code offset}. An unfinished last row is dropped.
+     * @return The offset just past the last complete row.
+     */
+    static long scanRows(InputStream in, long offset, RawRowConsumer consumer) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        byte[] row = new byte[256];
+        int rowLength = 0;
+        boolean quoted = false;
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            for (int i = 0; i < n; i++) {
+                byte b = chunk[i];
+                if (rowLength == row.length) {
+                    row = Arrays.copyOf(row, row.length * 2);
+                }
+                row[rowLength++] = b;
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    consumer.accept(offset, row, 0, rowLength);
+                    offset += rowLength;
+                    rowLength = 0;
+                }
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the bytes between the current length and {@code size}, after
+     * checking that the indexed prefix still ends the same way.
+     * @return The bytes, or null if the file must be re-read in full.
+     */
+    private byte[] readTail(File file, long size) throws IOException {
+        if (length <= 0 || size <= length || size - length > Integer.MAX_VALUE
+                || boundary.length == 0 || boundary[boundary.length - 1] != '\n') {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // The indexed prefix must still end with the same bytes
+            byte[] current = new byte[boundary.length];
+            raf.seek(length - boundary.length);
+            raf.readFully(current);
+            if (!Arrays.equals(current, boundary)) {
+                return null;
+            }
+            byte[] tail = new byte[(int) (size - length)];
+            raf.readFully(tail);
+            return tail;
+        }
+    }
+
+    private CsvTail advanceBy(byte[] tail, int complete) {
+        return complete == 0 ? this : new CsvTail(length + complete, lastBytes(boundary, tail, complete));
+    }
+
+    /**
+     * The last (up to) BOUNDARY_BYTES of {@code previous} followed by the
+     * first {@code count} bytes of {@code appended}.
+     */
+    private static byte[] lastBytes(byte[] previous, byte[] appended, int count) {
+        int total = (int) Math.min(BOUNDARY_BYTES, (long) previous.length + count);
+        byte[] result = new byte[total];
+        int fromAppended = Math.min(count, total);
+        int fromPrevious = total - fromAppended;
+        System.arraycopy(previous, previous.length - fromPrevious, result, 0, fromPrevious);
+        System.arraycopy(appended, count - fromAppended, result, fromPrevious, fromAppended);
+        return result;
+    }
+
+    /**
+     * Length of the prefix of {@code tail} made of complete rows, i.e. up to
+     * and including the last line break outside a quoted field.
+     */
+    private static int completeRowsLength(byte[] tail) {
+        boolean quoted = false;
+        int complete = 0;
+        for (int i = 0; i < tail.length; i++) {
+            if (tail[i] == '"') {
+                quoted = !quoted;
+            } else if (tail[i] == '\n' && !quoted) {
+                complete = i + 1;
+            }
+        }
+        return complete;
+    }
+}
@@ -0,0 +1,85 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures emergency-event logging latency (p50/p99) and throughput for
+ * each durability mode, with one caller and with several logging at once.
+ * Each event is timed through the same framed append that
+ * logAndNotifyEmergency performs, into a temporary log file, so the real
+ * emergency_logs.txt is not touched.
+ *
+ * Usage: java -cp bin util.EmergencyLogBenchmark [eventsPerThread] [concurrency...]
+ */
+public class EmergencyLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int[] concurrency = args.length > 1
+            ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 1, 8 };
+
+        String entry = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " | 2024A7PS0255U | emergencycall_1";
+
+        // Warm up the append path (JIT, writer thread, first file open)
+        run(EmergencyLogWriter.Durability.NONE, entry, 1, events, false);
+
+        for (EmergencyLogWriter.Durability durability : EmergencyLogWriter.Durability.values()) {
+            for (int threads : concurrency) {
+                run(durability, entry, threads, events, true);
+            }
+        }
+    }
+
+    private static void run(EmergencyLogWriter.Durability durability, String entry, int threads, int events, boolean print)
+            throws IOException, InterruptedException {
+        File log = File.createTempFile("emergency-bench", ".txt");
+        log.deleteOnExit();
+        String fileName = log.getPath();
+
+        long[] latencies = new long[threads * events];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t * events;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < events; i++) {
+                        long t0 = System.nanoTime();
+                        EmergencyLogWriter.append(fileName, entry, durability);
+                        latencies[first + i] = System.nanoTime() - t0;
+                    }
+                } catch (IOException | InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            workers[t].start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - t0) / 1_000_000_000.0;
+
+        if (print) {
+            Arrays.sort(latencies);
+            System.out.printf(Locale.ROOT, "%-5s %2d concurrent: p50 %8.3f ms | p99 %8.3f ms | %9.0f events/sec%n",
+                durability.name().toLowerCase(Locale.ROOT), threads, millis(latencies, 0.50), millis(latencies, 0.99),
+                latencies.length / seconds);
+        }
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(i, 0)] / 1_000_000.0;
+    }
+}
@@ -1,18 +1,90 @@
 package util;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import common.EmergencyLog;
+import common.EmergencyRing;
+import common.EmergencySocket;
+import common.SegmentedLog;
 
 /**
  * Manages logging and alerting for emergency calls.
+ * Each event is written as a framed line (sequence number, length and
+ * CRC32C, see {@link EmergencyLog}) so the Notifier can tell a complete
+ * event from one torn by a crash. How far a write is taken before
+ * {@link #logAndNotifyEmergency} returns is set by
+ * {@code -Dclinic.emergency.durability}:
+ * <ul>
+ * <li>{@code none}: written to the OS, not forced to disk</li>
+ * <li>{@code group} (default): forced to disk; events logged at the same time share one fsync</li>
+ * <li>{@code event}: forced to disk with one fsync per event</li>
+ * </ul>
+ * The log is split into segments ({@link SegmentedLog}); a new one is
+ * started once the current segment is full, and each records the first
+ * sequence number written to it.
+ *
+ * Once written, an emergency call is also pushed to the Notifier over a
+ * local socket ({@link EmergencySocket}, unless
+ * {@code -Dclinic.socket.disabled=true}) and published through a
+ * memory-mapped ring ({@link EmergencyRing}, unless
+ * {@code -Dclinic.ring.disabled=true}).
  */
 public class EmergencyLogWriter {
     private static final String FILE_NAME = "emergency_logs.txt";
     private static final String LOG_ENTRY_TYPE = "emergencycall_1";
 
+    public enum Durability { NONE, GROUP, EVENT }
+
+    private static final Durability DURABILITY = durabilityProperty();
+
+    // Per log file, the active segment as this process's last write left it;
+    // guarded by the class lock
+    private static final Map<String, Tail> tails = new HashMap<>();
+
+    // Producer side of the ring and socket to the Notifier; guarded by the class lock
+    private static final Path SOCKET_PATH = EmergencySocket.pathFor(new File(FILE_NAME));
+    private static final EmergencySocket.Sender socket =
+        Boolean.getBoolean("clinic.socket.disabled") ? null : new EmergencySocket.Sender(SOCKET_PATH);
+    private static EmergencyRing ring;
+    private static boolean ringUnavailable = Boolean.getBoolean("clinic.ring.disabled");
+
+    /**
+     * The durability named by {@code -Dclinic.emergency.durability}; a name
+     * that is not one is reported and GROUP used instead.
+     */
+    private static Durability durabilityProperty() {
+        String name = System.getProperty("clinic.emergency.durability", "group");
+        try {
+            return Durability.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[EmergencyLogWriter] ✗ Unknown clinic.emergency.durability '" + name + "', using GROUP");
+            return Durability.GROUP;
+        }
+    }
+
+    /**
+     * Truncates a torn tail left by a crash and picks up the sequence
+     * numbering. Called once at application startup; otherwise done before
+     * the first event is logged.
+     */
+    public static void recoverLog() {
+        try {
+            synchronized (EmergencyLogWriter.class) {
+                SegmentedLog.forFile(new File(FILE_NAME)).locked(() -> nextSequence(FILE_NAME));
+            }
+        } catch (IOException e) {
+            System.err.println("Error recovering emergency log: " + e.getMessage());
+        }
+    }
+
     /**
      * Appends an emergency log entry and triggers the Telegram notification.
      * @param bitsId The ID of the user who triggered the emergency call.
@@ -23,15 +95,8 @@ public class EmergencyLogWriter {
         boolean logSuccess = false;
         
         // 1. Log the event to a local file
-        try (FileWriter fw = new FileWriter(FILE_NAME, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-            
-            // Format: Timestamp | UserID | LogType
-            String logEntry = String.format("%s | %s | %s", timestamp, bitsId, LOG_ENTRY_TYPE);
-            
-            pw.println(logEntry);
+        try {
+            writeEntry(logEntry(bitsId));
             logSuccess = true;
 
         } catch (IOException e) {
@@ -43,4 +108,131 @@ public class EmergencyLogWriter {
         // Return true only if BOTH operations were successful
         return logSuccess ;
     }
-}
\ No newline at end of file
+
+    /**
+     * The log line for an emergency call by {@code bitsId}, made now.
+     * Format: Timestamp | UserID | LogType
+     */
+    static String logEntry(String bitsId) {
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        return String.format("%s | %s | %s", timestamp, bitsId, LOG_ENTRY_TYPE);
+    }
+
+    /**
+     * Appends a line made by {@link #logEntry} to emergency_logs.txt, as
+     * durable as {@code -Dclinic.emergency.durability} asks.
+     */
+    static void writeEntry(String entry) throws IOException {
+        long sequence = append(FILE_NAME, entry, DURABILITY);
+        publish(sequence, entry);
+    }
+
+    /**
+     * Hands a logged event to the Notifier over its local socket and through
+     * the shared-memory ring beside the log, so it need not wait for its
+     * file watcher. Best effort: with the Notifier down or behind, or
+     * another terminal publishing to the ring, it picks the event up from
+     * the log as before (and alerts once, whichever way it arrives first).
+     */
+    private static synchronized void publish(long sequence, String entry) {
+        if (socket != null && !socket.send(sequence, entry)) {
+            System.err.println("[EmergencyLogWriter] ✗ Notifier not listening on " + SOCKET_PATH + "; event " + sequence + " left to the log");
+        }
+        try {
+            if (ring == null && !ringUnavailable) {
+                ring = EmergencyRing.openProducer(EmergencyRing.fileFor(new File(FILE_NAME)));
+                ringUnavailable = ring == null;
+            }
+            if (ring != null && !ring.offer(sequence, entry)) {
+                System.err.println("[EmergencyLogWriter] ✗ Event " + sequence + " not in the ring (Notifier not keeping up); left to the log");
+            }
+        } catch (IOException e) {
+            System.err.println("[EmergencyLogWriter] ✗ Cannot open the emergency ring: " + e.getMessage());
+            ringUnavailable = true;
+        }
+    }
+
+    /**
+     * Frames {@code entry} with the file's next sequence number and appends
+     * it, returning once it is as durable as {@code durability} asks.
+     * @return The sequence number the event was written with.
+     */
+    static long append(String fileName, String entry, Durability durability) throws IOException {
+        AppendService appender = AppendService.getInstance();
+        SegmentedLog log = SegmentedLog.forFile(new File(fileName));
+        Written written;
+        synchronized (EmergencyLogWriter.class) {
+            // Readers leave a segment for good once a newer one exists, so the
+            // segment is picked and written under the log's lock, which rolling takes
+            written = log.locked(() -> {
+                long sequence = nextSequence(fileName);
+                File active = log.rollIfNeeded(sequence);
+                byte[] frame = EmergencyLog.frame(sequence, entry);
+                long offset = AppendService.await(appender.append(active.getPath(), null, frame));
+                tails.put(fileName, new Tail(active, offset + frame.length, sequence + 1));
+                return new Written(sequence, active);
+            });
+            if (durability == Durability.EVENT) {
+                sync(written.file); // Nothing else is logged until this one is on disk
+            }
+        }
+        if (durability == Durability.GROUP) {
+            sync(written.file); // Events logged meanwhile share the fsync
+        }
+        return written.sequence;
+    }
+
+    private static final class Written {
+        final long sequence;
+        final File file;
+
+        Written(long sequence, File file) {
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Forces {@code file} to disk through the append service; requests
+     * queued together share one fsync.
+     */
+    private static void sync(File file) throws IOException {
+        AppendService.await(AppendService.getInstance().append(file.getPath(), null, new byte[0], true));
+    }
+
+    private static final class Tail {
+        final File file;
+        final long length;
+        final long nextSequence;
+
+        Tail(File file, long length, long nextSequence) {
+            this.file = file;
+            this.length = length;
+            this.nextSequence = nextSequence;
+        }
+    }
+
+    /**
+     * Returns the next sequence number for {@code fileName}. Called holding
+     * the class lock and the log's lock, which every terminal writing the
+     * log takes. Unless the active segment is exactly as this process's
+     * last write left it, its tail is scanned again (truncating a frame torn
+     * by a crash), so terminals continue one another's numbering. A segment
+     * with no events yet continues from the number it was started with.
+     */
+    private static long nextSequence(String fileName) throws IOException {
+        SegmentedLog log = SegmentedLog.forFile(new File(fileName));
+        List<SegmentedLog.Segment> segments = log.segments();
+        SegmentedLog.Segment active = segments.get(segments.size() - 1);
+        Tail tail = tails.get(fileName);
+        if (tail != null && tail.file.equals(active.getFile()) && tail.length == active.getFile().length()) {
+            return tail.nextSequence;
+        }
+        long next = Math.max(EmergencyLog.recover(active.getFile()) + 1, active.getFirstSequence());
+        if (tail != null) {
+            next = Math.max(next, tail.nextSequence);
+        }
+        tails.put(fileName, new Tail(active.getFile(), active.getFile().length(), next));
+        return next;
+    }
+}
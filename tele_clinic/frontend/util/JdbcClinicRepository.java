@@ -0,0 +1,536 @@
+package util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import common.CsvReader;
+import common.CsvRow;
+import common.JdbcStudentRegistry;
+import util.PrescriptionFetcher.PrescriptionEntry;
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * {@link ClinicRepository} kept in an embedded database through plain JDBC,
+ * so lookups are served by the database's indexes instead of files.
+ * Any embedded pure-Java database with a JDBC driver works; the default URL
+ * ({@code jdbc:h2:./clinic_db}) expects the H2 jar on the classpath.
+ * Only standard SQL is used (identity columns, OFFSET/FETCH paging).
+ *
+ * The tables are created on first use and filled from the existing
+ * medical_registrations.csv, credentials.csv and prescriptions.txt, so
+ * switching backends keeps every registered user. The import is one
+ * transaction and is recorded in the csv_import table when it commits; an
+ * import that failed leaves nothing behind and is run again on next open.
+ * Emergency events are recorded in the database and still written to
+ * emergency_logs.txt, which the Notifier watches to alert guardians.
+ *
+ * One connection is shared; calls are serialized on the repository.
+ */
+public class JdbcClinicRepository implements ClinicRepository, AutoCloseable {
+
+    // AUTO_SERVER lets the Notifier open the same database file while the application has it open
+    static final String DEFAULT_URL = "jdbc:h2:./clinic_db;AUTO_SERVER=TRUE";
+
+    private static final String STUDENTS_CSV = "medical_registrations.csv";
+    private static final String CREDENTIALS_CSV = "credentials.csv";
+    private static final String PRESCRIPTIONS_CSV = "prescriptions.txt";
+    private static final String EMERGENCY_EVENT_TYPE = "emergencycall_1";
+    private static final int IMPORT_BATCH = 1000;
+
+    private static final String UPDATE_STUDENT = "UPDATE students SET "
+        + String.join(" = ?, ", JdbcStudentRegistry.COLUMNS) + " = ? WHERE bits_key = ?";
+    private static final String INSERT_STUDENT = "INSERT INTO students (bits_key, " + String.join(", ", JdbcStudentRegistry.COLUMNS)
+        + ") VALUES (?" + String.join("", Collections.nCopies(JdbcStudentRegistry.COLUMNS.size(), ", ?")) + ")";
+
+    private static final String INSERT_PRESCRIPTION = "INSERT INTO prescriptions"
+        + " (student_id, issued_at, staff_id, staff_name, medication, notes) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String CREATE_CSV_IMPORT = "CREATE TABLE csv_import (imported_at VARCHAR(32), row_count INT)";
+
+    private final Connection connection;
+    private final JdbcStudentRegistry students;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    JdbcClinicRepository(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.students = new JdbcStudentRegistry(connection);
+        createSchema();
+        if (!csvImported()) {
+            importCsvFiles(new File(STUDENTS_CSV), new File(CREDENTIALS_CSV), new File(PRESCRIPTIONS_CSV));
+        }
+    }
+
+    /**
+     * Connects to the database at {@code url}, creating and filling the
+     * tables the first time.
+     */
+    public static JdbcClinicRepository open(String url) {
+        try {
+            return new JdbcClinicRepository(DriverManager.getConnection(url));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open clinic database " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Optional<StudentMedicalData> findStudent(String bitsId) {
+        String[] fields = students.find(bitsId);
+        return fields == null ? Optional.<StudentMedicalData>empty() : Optional.of(new StudentMedicalData(fields));
+    }
+
+    @Override
+    public synchronized boolean addStudent(String[] registration) {
+        try {
+            upsertStudent(registration);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving student: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Only the row is read under the connection's lock; the deliberately
+     * slow hashing is done outside it, so other lookups are not held up.
+     */
+    @Override
+    public Optional<String> verifyCredentials(String username, String password) {
+        String stored;
+        String role;
+        synchronized (this) {
+            try {
+                PreparedStatement select = statement("SELECT password, role FROM credentials WHERE username = ?");
+                select.setString(1, username);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        stored = null;
+                        role = null;
+                    } else {
+                        stored = rs.getString(1);
+                        role = rs.getString(2);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error verifying credentials: " + e.getMessage());
+                return Optional.empty();
+            }
+        }
+        if (stored == null) {
+            PasswordHasher.verifyDummy(password); // As slow as a known username
+            return Optional.empty();
+        }
+        if (!PasswordHasher.verify(password, stored)) {
+            return Optional.empty();
+        }
+        if (PasswordHasher.needsRehash(stored)) {
+            String rehashed = PasswordHasher.hash(password);
+            synchronized (this) {
+                try {
+                    // Unless the password was changed meanwhile
+                    PreparedStatement update = statement("UPDATE credentials SET password = ? WHERE username = ? AND password = ?");
+                    update.setString(1, rehashed);
+                    update.setString(2, username);
+                    update.setString(3, stored);
+                    update.executeUpdate();
+                } catch (SQLException e) {
+                    System.err.println("Error rehashing credentials: " + e.getMessage());
+                }
+            }
+        }
+        return Optional.of(role);
+    }
+
+    @Override
+    public boolean addCredential(String username, String password, String role) {
+        String hashed = PasswordHasher.hash(password); // Deliberately slow; done before locking
+        synchronized (this) {
+            try {
+                return insertCredential(username, hashed, role);
+            } catch (SQLException e) {
+                // Also a second terminal registering the same username first
+                System.err.println("Error saving credential: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean registerStudent(String username, String password, String role, String[] registration) {
+        String hashed = PasswordHasher.hash(password);
+        synchronized (this) {
+            try {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    if (!insertCredential(username, hashed, role)) {
+                        connection.rollback();
+                        return false;
+                    }
+                    upsertStudent(registration);
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error saving registration: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean addPrescription(String[] prescription) {
+        try {
+            insertPrescription(prescription);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving prescription: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The history is pinned to the prescriptions with an id up to the
+     * highest one when it was opened; ids only grow, so its pages stay put
+     * while new prescriptions are stored.
+     */
+    @Override
+    public synchronized PrescriptionHistory openPrescriptionHistory(String bitsId) {
+        String id = bitsId == null ? "" : bitsId.trim();
+        try {
+            PreparedStatement select = statement("SELECT COUNT(*), MAX(id) FROM prescriptions WHERE student_id = ?");
+            select.setString(1, id);
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+                return new JdbcPrescriptionHistory(id, rs.getInt(1), rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading prescriptions: " + e.getMessage());
+            return new JdbcPrescriptionHistory(id, 0, 0);
+        }
+    }
+
+    private final class JdbcPrescriptionHistory implements PrescriptionHistory {
+        private final String bitsId;
+        private final int size;
+        private final long lastId;
+
+        JdbcPrescriptionHistory(String bitsId, int size, long lastId) {
+            this.bitsId = bitsId;
+            this.size = size;
+            this.lastId = lastId;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public List<PrescriptionEntry> page(int from, int count) {
+            if (from >= size || count <= 0) {
+                return Collections.emptyList();
+            }
+            synchronized (JdbcClinicRepository.this) {
+                try {
+                    PreparedStatement select = statement("SELECT student_id, issued_at, staff_id, staff_name, medication, notes"
+                        + " FROM prescriptions WHERE student_id = ? AND id <= ? ORDER BY id DESC OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+                    select.setString(1, bitsId);
+                    select.setLong(2, lastId);
+                    select.setInt(3, from);
+                    select.setInt(4, count);
+                    List<PrescriptionEntry> entries = new ArrayList<>();
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            entries.add(new PrescriptionEntry(rs.getString(1), rs.getString(2), rs.getString(3),
+                                rs.getString(4), rs.getString(5), rs.getString(6)));
+                        }
+                    }
+                    return Collections.unmodifiableList(entries);
+                } catch (SQLException e) {
+                    System.err.println("Error reading prescriptions: " + e.getMessage());
+                    return Collections.emptyList();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean logEmergency(String bitsId, String fullName) {
+        // The log file is what the Notifier watches, so it is written first
+        boolean logged = EmergencyLogWriter.logAndNotifyEmergency(bitsId, fullName);
+        synchronized (this) {
+            try {
+                PreparedStatement insert = statement("INSERT INTO emergency_events (logged_at, bits_id, event_type) VALUES (?, ?, ?)");
+                insert.setString(1, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+                insert.setString(2, bitsId);
+                insert.setString(3, EMERGENCY_EVENT_TYPE);
+                insert.executeUpdate();
+            } catch (SQLException e) {
+                // Still logged above, and the Notifier alerts from the log
+                System.err.println("Error recording emergency event: " + e.getMessage());
+            }
+        }
+        return logged;
+    }
+
+    /**
+     * Number of students in the database.
+     */
+    public synchronized int countStudents() {
+        return students.size();
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+        students.close();
+        connection.close();
+    }
+
+    /**
+     * Fills the tables from the CSV files within one transaction, which
+     * also records the import as done. Prescriptions are inserted in JDBC
+     * batches. Missing files are skipped.
+     * @return The number of rows imported.
+     */
+    synchronized int importCsvFiles(File studentsCsv, File credentialsCsv, File prescriptionsCsv) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        int imported = 0;
+        try {
+            // A BITS ID repeated in the file keeps its first row, as the CSV backend looks that one up
+            imported += importRows(studentsCsv, 2, row -> {
+                if (!studentExists(row[1])) {
+                    insertStudent(row);
+                }
+            }, null);
+            imported += importRows(credentialsCsv, 3, row -> {
+                // A username repeated in an old file keeps its first row, as logins matched it first
+                if (!credentialExists(row[0].trim())) {
+                    PreparedStatement insert = statement("INSERT INTO credentials (username, password, role) VALUES (?, ?, ?)");
+                    insert.setString(1, row[0].trim());
+                    insert.setString(2, row[1].trim());
+                    insert.setString(3, row[2].trim());
+                    insert.executeUpdate();
+                }
+            }, null);
+            PreparedStatement prescriptions = statement(INSERT_PRESCRIPTION);
+            imported += importRows(prescriptionsCsv, 6, row -> {
+                bindPrescription(prescriptions, row);
+                prescriptions.addBatch();
+            }, prescriptions);
+            PreparedStatement done = statement("INSERT INTO csv_import (imported_at, row_count) VALUES (?, ?)");
+            done.setString(1, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+            done.setInt(2, imported);
+            done.executeUpdate();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (imported > 0) {
+            System.out.println("[JdbcClinicRepository] ✓ Imported " + imported + " rows from the CSV files");
+        }
+        return imported;
+    }
+
+    private interface RowImporter {
+        void importRow(String[] row) throws SQLException;
+    }
+
+    /**
+     * Passes each row of {@code csv} with at least {@code minColumns}
+     * fields (header excluded) to {@code importer}. If the importer adds
+     * to {@code batch}, the batch is executed every IMPORT_BATCH rows and
+     * at the end.
+     */
+    private int importRows(File csv, int minColumns, RowImporter importer, PreparedStatement batch) throws SQLException {
+        if (!csv.exists()) {
+            return 0;
+        }
+        int count = 0;
+        try (CsvReader reader = new CsvReader(new FileReader(csv))) {
+            CsvRow row = new CsvRow();
+            reader.next(row); // Skip the header
+            while (reader.next(row)) {
+                if (row.size() < minColumns) {
+                    continue;
+                }
+                String[] fields = new String[row.size()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = row.get(i);
+                }
+                importer.importRow(fields);
+                if (++count % IMPORT_BATCH == 0 && batch != null) {
+                    batch.executeBatch();
+                }
+            }
+            if (batch != null) {
+                batch.executeBatch();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cannot import " + csv + ": " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    /**
+     * Whether the CSV files have been imported: a committed import left
+     * its row in csv_import.
+     */
+    private boolean csvImported() throws SQLException {
+        try (Statement select = connection.createStatement();
+                ResultSet rs = select.executeQuery("SELECT COUNT(*) FROM csv_import")) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    /**
+     * Creates the tables and indexes unless they exist.
+     */
+    private void createSchema() throws SQLException {
+        if (tableExists("students")) {
+            if (!tableExists("csv_import")) {
+                // Created before imports were recorded, and imported when it was created
+                try (Statement create = connection.createStatement()) {
+                    create.executeUpdate(CREATE_CSV_IMPORT);
+                    create.executeUpdate("INSERT INTO csv_import (imported_at, row_count) VALUES ('', 0)");
+                }
+            }
+            return;
+        }
+
+        StringBuilder studentColumns = new StringBuilder("bits_key VARCHAR(64) PRIMARY KEY");
+        for (String column : JdbcStudentRegistry.COLUMNS) {
+            studentColumns.append(", ").append(column).append(" VARCHAR(1024)");
+        }
+        try (Statement create = connection.createStatement()) {
+            create.executeUpdate("CREATE TABLE students (" + studentColumns + ")");
+            create.executeUpdate("CREATE TABLE credentials (username VARCHAR(255) PRIMARY KEY, password VARCHAR(512), role VARCHAR(32))");
+            create.executeUpdate("CREATE TABLE prescriptions (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " student_id VARCHAR(64), issued_at VARCHAR(32), staff_id VARCHAR(64), staff_name VARCHAR(255),"
+                + " medication VARCHAR(1024), notes VARCHAR(4096))");
+            create.executeUpdate("CREATE INDEX prescriptions_by_student ON prescriptions (student_id, id)");
+            create.executeUpdate("CREATE TABLE emergency_events (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " logged_at VARCHAR(32), bits_id VARCHAR(64), event_type VARCHAR(64))");
+            create.executeUpdate(CREATE_CSV_IMPORT);
+        }
+    }
+
+    private boolean tableExists(String table) {
+        try (Statement probe = connection.createStatement()) {
+            probe.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Inserts a registration, or replaces the one with the same BITS ID.
+     */
+    private void upsertStudent(String[] registration) throws SQLException {
+        int columns = JdbcStudentRegistry.COLUMNS.size();
+        PreparedStatement update = statement(UPDATE_STUDENT);
+        for (int i = 0; i < columns; i++) {
+            update.setString(i + 1, field(registration, i));
+        }
+        update.setString(columns + 1, JdbcStudentRegistry.key(registration[1]));
+        if (update.executeUpdate() == 0) {
+            insertStudent(registration);
+        }
+    }
+
+    private void insertStudent(String[] registration) throws SQLException {
+        int columns = JdbcStudentRegistry.COLUMNS.size();
+        PreparedStatement insert = statement(INSERT_STUDENT);
+        insert.setString(1, JdbcStudentRegistry.key(registration[1]));
+        for (int i = 0; i < columns; i++) {
+            insert.setString(i + 2, field(registration, i));
+        }
+        insert.executeUpdate();
+    }
+
+    private void insertPrescription(String[] prescription) throws SQLException {
+        PreparedStatement insert = statement(INSERT_PRESCRIPTION);
+        bindPrescription(insert, prescription);
+        insert.executeUpdate();
+    }
+
+    private static void bindPrescription(PreparedStatement insert, String[] prescription) throws SQLException {
+        for (int i = 0; i < 6; i++) {
+            insert.setString(i + 1, field(prescription, i));
+        }
+    }
+
+    /**
+     * @return false if the username is already registered.
+     */
+    private boolean insertCredential(String username, String hashed, String role) throws SQLException {
+        if (credentialExists(username)) {
+            return false;
+        }
+        PreparedStatement insert = statement("INSERT INTO credentials (username, password, role) VALUES (?, ?, ?)");
+        insert.setString(1, username);
+        insert.setString(2, hashed);
+        insert.setString(3, role);
+        insert.executeUpdate();
+        return true;
+    }
+
+    private boolean studentExists(String bitsId) throws SQLException {
+        PreparedStatement select = statement("SELECT 1 FROM students WHERE bits_key = ?");
+        select.setString(1, JdbcStudentRegistry.key(bitsId));
+        try (ResultSet rs = select.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    private boolean credentialExists(String username) throws SQLException {
+        PreparedStatement select = statement("SELECT 1 FROM credentials WHERE username = ?");
+        select.setString(1, username);
+        try (ResultSet rs = select.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Prepared once per connection and reused; callers hold the repository lock.
+     */
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static String field(String[] fields, int index) {
+        return index < fields.length && fields[index] != null ? fields[index].trim() : "";
+    }
+}
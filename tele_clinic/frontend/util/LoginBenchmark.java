@@ -0,0 +1,112 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Measures login latency (p50/p99) and throughput with N logins running
+ * concurrently, against a generated credentials file of PBKDF2 hashes at the
+ * calibrated work factor. A run against the same users with plain passwords
+ * (the pre-hashing format) is printed first for comparison. Every tenth
+ * attempt uses a wrong password.
+ *
+ * Usage: java -cp bin util.LoginBenchmark [users] [attemptsPerThread] [concurrency...]
+ * Set -Dclinic.password.targetMillis to try other work factors.
+ */
+public class LoginBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int attempts = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int[] concurrency = args.length > 2
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 1, 2, 4, 8, 16 };
+
+        System.out.printf(Locale.ROOT, "%d cores, %d PBKDF2 iterations%n",
+            Runtime.getRuntime().availableProcessors(), PasswordHasher.getIterations());
+
+        File plain = generate(users, false);
+        File hashed = generate(users, true);
+        for (int threads : concurrency) {
+            run("plain ", plain, users, threads, attempts);
+        }
+        for (int threads : concurrency) {
+            run("hashed", hashed, users, threads, attempts);
+        }
+    }
+
+    private static void run(String label, File file, int users, int threads, int attempts) throws InterruptedException {
+        CredentialIndex index = CredentialIndex.forFile(file.getPath());
+        long[] latencies = new long[threads * attempts];
+        int[] failures = new int[1];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int first = t * attempts;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < attempts; i++) {
+                    int user = random.nextInt(users);
+                    boolean wrong = i % 10 == 9;
+                    long t0 = System.nanoTime();
+                    CredentialIndex.Credential match = index.verify("user" + user, wrong ? "nope" : "secret" + user);
+                    latencies[first + i] = System.nanoTime() - t0;
+                    if ((match != null) == wrong) {
+                        synchronized (failures) {
+                            failures[0]++;
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - t0) / 1_000_000_000.0;
+
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "%s %3d concurrent: p50 %8.3f ms | p99 %8.3f ms | %8.1f logins/sec%s%n",
+            label, threads, millis(latencies, 0.50), millis(latencies, 0.99), latencies.length / seconds,
+            failures[0] == 0 ? "" : " | " + failures[0] + " WRONG RESULTS");
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(i, 0)] / 1_000_000.0;
+    }
+
+    private static File generate(int users, boolean hash) throws IOException {
+        String[] passwords = IntStream.range(0, users).parallel()
+            .mapToObj(i -> hash ? PasswordHasher.hash("secret" + i) : "secret" + i)
+            .toArray(String[]::new);
+
+        File csv = File.createTempFile("credentials-bench", ".csv");
+        csv.deleteOnExit();
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(csv))) {
+            w.write("Username,Password,Role");
+            w.newLine();
+            for (int i = 0; i < users; i++) {
+                w.write("user" + i + "," + passwords[i] + ",Student");
+                w.newLine();
+            }
+        }
+        return csv;
+    }
+}
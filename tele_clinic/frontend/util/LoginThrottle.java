@@ -0,0 +1,147 @@
+package util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits login attempts per username and per terminal with token buckets,
+ * so password guessing and key-mashing are turned away before they reach
+ * the credentials file (each verification costs a deliberately slow hash).
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will be
+ * full again; taking a token is one compare-and-set on it, and buckets are
+ * kept in concurrent maps, so checks never block each other. An attempt is
+ * allowed while that time is no more than {@code burst - 1} refill
+ * intervals in the future.
+ */
+public final class LoginThrottle {
+
+    // Buckets that have refilled are dropped once a map grows past this
+    private static final int MAX_TRACKED_KEYS = 10_000;
+
+    private static final class Limit {
+        final long intervalNanos;
+        final long toleranceNanos;
+
+        Limit(int burst, long refill, TimeUnit unit) {
+            this.intervalNanos = unit.toNanos(refill);
+            this.toleranceNanos = intervalNanos * (burst - 1);
+        }
+    }
+
+    private final Limit perUsername;
+    private final Limit perTerminal;
+    private final Map<String, AtomicLong> usernames = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> terminals = new ConcurrentHashMap<>();
+
+    /**
+     * 5 attempts per username, then one every 30 seconds; 20 attempts per
+     * terminal, then one every 3 seconds.
+     */
+    public LoginThrottle() {
+        this(5, 30, 20, 3, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param usernameBurst Attempts allowed back to back for one username.
+     * @param usernameRefill Time for one username attempt to become available again.
+     * @param terminalBurst Attempts allowed back to back from one terminal, across usernames.
+     * @param terminalRefill Time for one terminal attempt to become available again.
+     */
+    public LoginThrottle(int usernameBurst, long usernameRefill, int terminalBurst, long terminalRefill, TimeUnit unit) {
+        if (usernameBurst < 1 || terminalBurst < 1) {
+            throw new IllegalArgumentException("Burst must be at least 1");
+        }
+        this.perUsername = new Limit(usernameBurst, usernameRefill, unit);
+        this.perTerminal = new Limit(terminalBurst, terminalRefill, unit);
+    }
+
+    /**
+     * Identifies this machine as a terminal: {@code -Dclinic.terminal.id}
+     * if set, otherwise the host name.
+     */
+    public static String localTerminal() {
+        String id = System.getProperty("clinic.terminal.id");
+        if (id != null) {
+            return id;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "local";
+        }
+    }
+
+    /**
+     * Takes one attempt from the terminal's and the username's bucket.
+     * @return 0 if the attempt may go ahead, otherwise the milliseconds
+     *         until the next one will be allowed.
+     */
+    public long tryAcquire(String username, String terminal) {
+        long now = System.nanoTime();
+        long wait = take(terminals, terminal, perTerminal, now);
+        if (wait == 0) {
+            wait = take(usernames, normalize(username), perUsername, now);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(wait + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    /**
+     * Forgets failed attempts for a username after it logs in, so earlier
+     * typos do not count against its next session.
+     */
+    public void loginSucceeded(String username) {
+        usernames.remove(normalize(username));
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise nanoseconds until one is available.
+     */
+    private static long take(Map<String, AtomicLong> buckets, String key, Limit limit, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_TRACKED_KEYS) {
+                purgeFull(buckets, now);
+            }
+            AtomicLong created = new AtomicLong(now);
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            long start = fullAt - now > 0 ? fullAt : now; // nanoTime may wrap; compare differences
+            long ahead = start - now;
+            if (ahead > limit.toleranceNanos) {
+                return ahead - limit.toleranceNanos;
+            }
+            if (bucket.compareAndSet(fullAt, start + limit.intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops buckets that have refilled completely; they hold no state that
+     * a fresh bucket would not.
+     */
+    private static void purgeFull(Map<String, AtomicLong> buckets, long now) {
+        for (Iterator<AtomicLong> it = buckets.values().iterator(); it.hasNext(); ) {
+            if (it.next().get() - now <= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String normalize(String username) {
+        return username == null ? "" : username.trim().toUpperCase(Locale.ROOT);
+    }
+}
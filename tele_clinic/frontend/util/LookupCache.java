@@ -0,0 +1,155 @@
+package util;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Size-bounded LRU cache with a time-to-live, placed in front of lookups
+ * that read a data file. The whole cache is dropped as soon as the file's
+ * size or modification time changes, so a cached view is never older than
+ * the file it came from. Hit, miss, eviction and invalidation counts are
+ * kept for monitoring.
+ */
+public final class LookupCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final File file;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long fileLength = -1;
+    private long fileModified = -1;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    LookupCache(String name, File file, int maxEntries, long ttl, TimeUnit unit) {
+        this.name = name;
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        // Access order: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LookupCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for {@code key}, or loads it with
+     * {@code loader} on a miss (absent, expired, or the file changed since
+     * it was cached). The loader runs without holding the cache lock; its
+     * result is cached only if it is not null and the file did not change
+     * while it ran.
+     */
+    V get(K key, Function<? super K, ? extends V> loader) {
+        long length;
+        long modified;
+        synchronized (this) {
+            checkFile();
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits++;
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions++;
+            }
+            misses++;
+            length = fileLength;
+            modified = fileModified;
+        }
+
+        V value = loader.apply(key);
+        if (value != null) {
+            synchronized (this) {
+                checkFile();
+                if (fileLength == length && fileModified == modified) {
+                    entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        purgeExpired();
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Entries dropped for exceeding the size bound or the TTL. */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Times the whole cache was dropped because the file changed. */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%s cache: %d entries, %d hits, %d misses (%.0f%% hit rate), %d evictions, %d invalidations",
+            name, entries.size(), hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions, invalidations);
+    }
+
+    private void checkFile() {
+        long length = file.length();
+        long modified = file.lastModified();
+        if (length != fileLength || modified != fileModified) {
+            if (!entries.isEmpty()) {
+                entries.clear();
+                invalidations++;
+            }
+            fileLength = length;
+            fileModified = modified;
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt - now <= 0) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+}
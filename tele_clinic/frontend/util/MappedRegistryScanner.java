@@ -0,0 +1,272 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import common.CsvReader;
+
+/**
+ * Allocation-light scan of medical_registrations.csv.
+ * The file is memory-mapped and the BITS_ID column of each row is compared
+ * in place against the requested IDs, so rows that do not match never become
+ * Strings. Only matching rows are decoded and parsed into columns.
+ */
+final class MappedRegistryScanner {
+
+    // Rows are scanned through windows of this size; a row that straddles
+    // a window boundary is re-read at the start of the next window.
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private static final int BITS_ID_INDEX = 1;
+
+    private MappedRegistryScanner() {
+    }
+
+    /**
+     * Finds the first row whose BITS_ID column matches {@code bitsId},
+     * ignoring case and surrounding quotes/whitespace.
+     * @return The parsed columns of the matching row, or null if there is none.
+     */
+    static String[] findRow(File file, String bitsId) throws IOException {
+        return findRows(file, Collections.singleton(bitsId)).get(StudentRegistryIndex.normalize(bitsId));
+    }
+
+    /**
+     * Resolves many BITS IDs in a single pass over the file. The scan stops
+     * early once every requested ID has been found.
+     * @return Parsed columns of the first matching row, keyed by normalized BITS ID.
+     */
+    static Map<String, String[]> findRows(File file, Collection<String> bitsIds) throws IOException {
+        TargetSet targets = new TargetSet(bitsIds);
+        Map<String, String[]> found = new HashMap<>();
+        if (targets.size() == 0) {
+            return found;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            boolean headerSkipped = false;
+
+            while (windowStart < size) {
+                long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                boolean lastWindow = windowStart + windowLength == size;
+                int limit = (int) windowLength;
+                int lineStart = 0;
+
+                while (lineStart < limit) {
+                    int lineEnd = rowEnd(buf, lineStart, limit);
+                    if (lineEnd < 0) {
+                        if (!lastWindow) {
+                            break; // Partial row, continue in the next window
+                        }
+                        lineEnd = limit;
+                    }
+
+                    if (!headerSkipped) {
+                        headerSkipped = true;
+                    } else {
+                        int target = matchId(buf, lineStart, lineEnd, targets);
+                        if (target >= 0 && !targets.isFound(target)) {
+                            targets.markFound(target);
+                            found.put(targets.key(target), decodeRow(buf, lineStart, lineEnd));
+                            if (found.size() == targets.size()) {
+                                return found;
+                            }
+                        }
+                    }
+                    lineStart = lineEnd + 1;
+                }
+
+                if (lineStart == 0 && !lastWindow) {
+                    throw new IOException("Row longer than " + WINDOW_SIZE + " bytes at offset " + windowStart);
+                }
+                windowStart += lineStart;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Locates the BITS_ID column of the row in [start, end) and looks it up
+     * in the target set without materializing it. Commas inside quoted
+     * fields are skipped, matching how {@link CsvReader} splits the row.
+     * @return The matching target's slot, or -1.
+     */
+    private static int matchId(MappedByteBuffer buf, int start, int end, TargetSet targets) {
+        int fieldStart = start;
+        for (int column = 0; column < BITS_ID_INDEX; column++) {
+            int comma = fieldEnd(buf, fieldStart, end);
+            if (comma == end) {
+                return -1;
+            }
+            fieldStart = comma + 1;
+        }
+        int fieldEnd = fieldEnd(buf, fieldStart, end);
+
+        // Trim whitespace (including a trailing '\r'), then one pair of quotes, then whitespace again
+        while (fieldStart < fieldEnd && buf.get(fieldStart) <= ' ') fieldStart++;
+        while (fieldEnd > fieldStart && buf.get(fieldEnd - 1) <= ' ') fieldEnd--;
+        if (fieldEnd - fieldStart >= 2 && buf.get(fieldStart) == '"' && buf.get(fieldEnd - 1) == '"') {
+            fieldStart++;
+            fieldEnd--;
+            while (fieldStart < fieldEnd && buf.get(fieldStart) <= ' ') fieldStart++;
+            while (fieldEnd > fieldStart && buf.get(fieldEnd - 1) <= ' ') fieldEnd--;
+        }
+        return targets.lookup(buf, fieldStart, fieldEnd);
+    }
+
+    private static String[] decodeRow(MappedByteBuffer buf, int start, int end) {
+        byte[] row = new byte[end - start];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = buf.get(start + i);
+        }
+        return CsvReader.parseLine(new String(row, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the index of the '\n' that ends the row starting at
+     * {@code from}, ignoring line breaks inside quoted fields, or -1 if the
+     * row is not terminated before {@code to}. A doubled quote toggles the
+     * quoted state twice, so escaped quotes need no special handling.
+     */
+    private static int rowEnd(MappedByteBuffer buf, int from, int to) {
+        boolean quoted = false;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the comma that ends the field starting at
+     * {@code from}, skipping commas inside quotes, or {@code to}.
+     */
+    private static int fieldEnd(MappedByteBuffer buf, int from, int to) {
+        boolean quoted = false;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == ',' && !quoted) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static byte upper(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+    }
+
+    /**
+     * Open-addressing hash set of upper-cased target IDs that can be probed
+     * with a byte range of the mapped file, so non-matching rows cost no
+     * allocation regardless of how many IDs are requested.
+     */
+    private static final class TargetSet {
+        private final String[] keys;
+        private final byte[][] bytes;
+        private final int[] hashes;
+        private final boolean[] found;
+        private final int mask;
+        private int size;
+        private int onlySlot = -1;
+
+        TargetSet(Collection<String> bitsIds) {
+            int capacity = Integer.highestOneBit(Math.max(4, bitsIds.size() * 2 - 1)) << 1;
+            keys = new String[capacity];
+            bytes = new byte[capacity][];
+            hashes = new int[capacity];
+            found = new boolean[capacity];
+            mask = capacity - 1;
+
+            for (String bitsId : bitsIds) {
+                String key = StudentRegistryIndex.normalize(bitsId);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                byte[] b = key.getBytes(StandardCharsets.UTF_8);
+                int hash = hash(b);
+                int slot = hash & mask;
+                while (keys[slot] != null && !keys[slot].equals(key)) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == null) {
+                    keys[slot] = key;
+                    bytes[slot] = b;
+                    hashes[slot] = hash;
+                    size++;
+                    onlySlot = slot;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        String key(int slot) {
+            return keys[slot];
+        }
+
+        boolean isFound(int slot) {
+            return found[slot];
+        }
+
+        void markFound(int slot) {
+            found[slot] = true;
+        }
+
+        int lookup(MappedByteBuffer buf, int start, int end) {
+            int length = end - start;
+            if (size == 1) {
+                // Single-ID lookups: a direct compare rejects most rows on the first byte
+                byte[] target = bytes[onlySlot];
+                return target.length == length && equalsUpper(buf, start, target) ? onlySlot : -1;
+            }
+
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + upper(buf.get(i));
+            }
+            for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && bytes[slot].length == length && equalsUpper(buf, start, bytes[slot])) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean equalsUpper(MappedByteBuffer buf, int start, byte[] target) {
+            for (int i = 0; i < target.length; i++) {
+                if (upper(buf.get(start + i)) != target[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(byte[] b) {
+            int hash = 1;
+            for (byte value : b) {
+                hash = 31 * hash + value;
+            }
+            return hash;
+        }
+    }
+}
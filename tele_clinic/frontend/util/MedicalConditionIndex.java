@@ -0,0 +1,195 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * Bitmap secondary indexes over the BloodType, Allergies and ChronicIllnesses
+ * columns. Every student gets a row ordinal, and each distinct (normalized)
+ * value maps to a bitset of the ordinals that have it, so a multi-predicate
+ * {@link StudentQuery} is answered with a few word-wise AND/OR operations.
+ *
+ * Free-text columns are split into terms ("Penicillin, Dust" gives
+ * "penicillin" and "dust"), and multi-word terms are also indexed under each
+ * word so "asthma" matches "mild asthma". Placeholders such as "None" or
+ * "N/A" are not indexed.
+ */
+final class MedicalConditionIndex {
+
+    enum Column { BLOOD_TYPE, ALLERGIES, CHRONIC_ILLNESSES }
+
+    private static final BitSet EMPTY = new BitSet();
+
+    static final String UNKNOWN_BLOOD_TYPE = "UNKNOWN";
+
+    // ABO group (zero for O), then an optional Rh sign: "+", "pos", "positive", "+ve" and the negatives
+    private static final Pattern BLOOD_TYPE = Pattern.compile(
+        "(AB|A|B|O|0)\\s*(?:(\\+(?:\\s*VE)?|POS(?:ITIVE)?)|(-(?:\\s*VE)?|NEG(?:ATIVE)?))?");
+
+    private final List<StudentMedicalData> rows = new ArrayList<>();
+    private final Map<String, BitSet> bloodTypes = new HashMap<>();
+    private final Map<String, BitSet> allergies = new HashMap<>();
+    private final Map<String, BitSet> chronicIllnesses = new HashMap<>();
+
+    MedicalConditionIndex(Iterable<StudentMedicalData> records) {
+        for (StudentMedicalData data : records) {
+            add(data);
+        }
+    }
+
+    /**
+     * Indexes one more student under the next row ordinal.
+     */
+    synchronized void add(StudentMedicalData data) {
+        int ordinal = rows.size();
+        rows.add(data);
+
+        String bloodType = normalizeBloodType(data.bloodType);
+        if (!bloodType.isEmpty()) {
+            bitsFor(bloodTypes, bloodType).set(ordinal);
+        }
+        for (String term : terms(data.allergies)) {
+            bitsFor(allergies, term).set(ordinal);
+        }
+        for (String term : terms(data.chronicIllnesses)) {
+            bitsFor(chronicIllnesses, term).set(ordinal);
+        }
+    }
+
+    synchronized List<StudentMedicalData> find(StudentQuery query) {
+        BitSet matches = query.evaluate(this);
+        List<StudentMedicalData> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(rows.get(i));
+        }
+        return result;
+    }
+
+    synchronized int count(StudentQuery query) {
+        return query.evaluate(this).cardinality();
+    }
+
+    /**
+     * Returns the ordinals having {@code value} in {@code column}. The
+     * returned set is shared and must not be modified.
+     */
+    BitSet lookup(Column column, String value) {
+        BitSet bits;
+        switch (column) {
+            case BLOOD_TYPE:
+                bits = bloodTypes.get(normalizeBloodType(value));
+                break;
+            case ALLERGIES:
+                bits = allergies.get(normalizeTerm(value));
+                break;
+            default:
+                bits = chronicIllnesses.get(normalizeTerm(value));
+                break;
+        }
+        return bits == null ? EMPTY : bits;
+    }
+
+    /**
+     * Normalizes blood types written in different ways to the "AB+" form:
+     * "ab +", "O positive", "B -ve" and "0+" (zero for O) are all accepted.
+     * Anything else ("Unknown", "Not known", "N/A") is not read as a type:
+     * it is indexed, and looked up, as {@link #UNKNOWN_BLOOD_TYPE}.
+     * @return The normalized type, or "" for a missing value.
+     */
+    static String normalizeBloodType(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return "";
+        }
+        Matcher m = BLOOD_TYPE.matcher(value.trim().toUpperCase(Locale.ROOT));
+        if (!m.matches()) {
+            return UNKNOWN_BLOOD_TYPE;
+        }
+        String group = m.group(1).equals("0") ? "O" : m.group(1);
+        return m.group(2) != null ? group + "+" : m.group(3) != null ? group + "-" : group;
+    }
+
+    /**
+     * Splits a free-text medical column into normalized terms, plus the
+     * individual words of multi-word terms.
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace(" and ", ",");
+        int start = 0;
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ',';
+            if (c == ',' || c == ';' || c == '/' || c == '&' || c == '\n') {
+                addTerm(terms, lower.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(Set<String> terms, String raw) {
+        String term = normalizeTerm(raw);
+        if (term.isEmpty() || isPlaceholder(term)) {
+            return;
+        }
+        terms.add(term);
+        if (term.indexOf(' ') >= 0) {
+            for (String word : term.split(" ")) {
+                if (word.length() > 2 && !isPlaceholder(word)) {
+                    terms.add(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lower-cases a term, keeps letters and digits, and collapses the rest
+     * to single spaces ("Penicillin (severe)" becomes "penicillin severe").
+     */
+    static String normalizeTerm(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isPlaceholder(String term) {
+        return term.equals("none") || term.equals("n a") || term.equals("na") || term.equals("nil")
+            || term.equals("no") || term.equals("nothing");
+    }
+
+    private static BitSet bitsFor(Map<String, BitSet> index, String value) {
+        BitSet bits = index.get(value);
+        if (bits == null) {
+            bits = new BitSet();
+            index.put(value, bits);
+        }
+        return bits;
+    }
+}
@@ -1,9 +1,8 @@
 package util;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.Charset;
 
 /**
  * Writes student medical registration data to a CSV file.
@@ -16,38 +15,53 @@ public class MedicalDataWriter {
     private static final String CSV_HEADER = 
         "FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramNo,BloodType,Allergies,ChronicIllnesses,InsuranceType,GuardianName,GuardianContact";
 
+    // Whether an existing file's header has been checked in this process
+    private static boolean headerChecked = false;
+
     /**
-     * Appends a new user's medical and personal details to a CSV file.
+     * Appends a new user's medical and personal details to a CSV file,
+     * through the shared {@link AppendService}.
+     * The appended record is also published, with its file offset, to the
+     * in-memory registry index so lookups see the new student immediately.
      * @param data An array of strings containing the collected form data.
      * @return true if the write was successful, false otherwise.
      * Demonstrates Exception Handling.
      */
     public static boolean writeDataToCsv(String[] data) {
-        File csvFile = new File(FILE_NAME);
-        boolean isNewFile = !csvFile.exists();
-
-        try (FileWriter fw = new FileWriter(csvFile, true);
-             PrintWriter pw = new PrintWriter(fw)) {
+        byte[] header = (CSV_HEADER + System.lineSeparator()).getBytes(Charset.defaultCharset());
 
-            // Write header only if the file is new or old header is missing
-            if (isNewFile || !hasCorrectHeader(csvFile)) {
-                pw.println(CSV_HEADER);
+        // Prepare the data line
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < data.length; i++) {
+            // Wrap in quotes and escape internal quotes
+            sb.append("\"").append(data[i].replace("\"", "\"\"")).append("\"");
+            // Add comma unless it's the last item
+            if (i < data.length - 1) {
+                sb.append(",");
             }
+        }
+        sb.append(System.lineSeparator());
+        byte[] record = sb.toString().getBytes(Charset.defaultCharset());
 
-            // Prepare the data line
-            StringBuilder sb = new StringBuilder();
-            
-            for (int i = 0; i < data.length; i++) {
-                // Wrap in quotes and escape internal quotes
-                sb.append("\"").append(data[i].replace("\"", "\"\"")).append("\"");
-                // Add comma unless it's the last item
-                if (i < data.length - 1) {
-                    sb.append(",");
+        try {
+            AppendService appender = AppendService.getInstance();
+
+            // An empty file gets the header from the append service; a file
+            // with an outdated header gets the current one once per process
+            synchronized (MedicalDataWriter.class) {
+                if (!headerChecked) {
+                    File csvFile = new File(FILE_NAME);
+                    if (csvFile.length() > 0 && !hasCorrectHeader(csvFile)) {
+                        appender.appendAndWait(FILE_NAME, null, header);
+                    }
+                    headerChecked = true;
                 }
             }
-            
-            pw.println(sb.toString());
-            System.out.println("DEBUG: Successfully wrote data to CSV: " + data[0] + ", " + data[1]);
+
+            long recordOffset = appender.appendAndWait(FILE_NAME, header, record);
+
+            StudentRegistryIndex.recordAppended(FILE_NAME, recordOffset, record, data);
+            System.out.println("DEBUG: Successfully wrote data to CSV: " + data[0] + ", " + data[1] + " at offset " + recordOffset);
             return true;
 
         } catch (IOException e) {
@@ -0,0 +1,192 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 (HMAC-SHA256) password hashes for credentials.csv, stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 salt and hash,
+ * so the value never needs CSV quoting.
+ *
+ * The iteration count is calibrated once per process so that one
+ * verification takes about {@code -Dclinic.password.targetMillis} (default
+ * 50 ms) on this machine, and never drops below {@link #MIN_ITERATIONS}.
+ * Rows written before hashing was introduced still hold the password itself;
+ * {@link #verify} accepts them and {@link #needsRehash} flags them so the
+ * caller can migrate them after a successful login.
+ */
+public final class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    static final int MIN_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 5_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final int STABLE_RUNS = 5;
+    private static final int MAX_CALIBRATION_RUNS = 50;
+    private static final long DEFAULT_TARGET_MILLIS = 50;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static volatile int iterations; // 0 until calibrated
+    private static volatile String dummyHash; // Checked for usernames with no row
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Calibrates the work factor (and makes the hash unknown usernames are
+     * checked against) on a background thread, so the first login does not
+     * pay for it. Called once at application startup.
+     */
+    public static void calibrateInBackground() {
+        Thread thread = new Thread(PasswordHasher::dummyHash, "PasswordCalibration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the iteration count new hashes are created with, calibrating
+     * it on first use.
+     */
+    public static int getIterations() {
+        int n = iterations;
+        if (n == 0) {
+            synchronized (PasswordHasher.class) {
+                n = iterations;
+                if (n == 0) {
+                    long targetMillis = Long.getLong("clinic.password.targetMillis", DEFAULT_TARGET_MILLIS);
+                    n = calibrate(targetMillis);
+                    iterations = n;
+                    System.out.println("[PasswordHasher] ✓ Using " + n + " PBKDF2 iterations (~" + targetMillis + " ms per login)");
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns a new salted hash of {@code password} in the stored format.
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int n = getIterations();
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + n + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(pbkdf2(password, salt, n));
+    }
+
+    /**
+     * Checks {@code password} against a stored value, which is either a hash
+     * from {@link #hash} or, for rows not yet migrated, the password itself.
+     * Both comparisons take the same time wherever the first mismatch is.
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int n = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            if (n < 1 || n > MAX_ITERATIONS || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, n));
+        } catch (IllegalArgumentException e) {
+            return false; // Malformed row
+        }
+    }
+
+    /**
+     * Takes as long as {@link #verify} against a hash made now, for a login
+     * whose username has no row, so the response time does not tell which
+     * usernames exist.
+     * @return Always false.
+     */
+    public static boolean verifyDummy(String password) {
+        verify(password == null ? "" : password, dummyHash());
+        return false;
+    }
+
+    private static String dummyHash() {
+        String dummy = dummyHash;
+        if (dummy == null) {
+            dummy = hash("dummy-password");
+            dummyHash = dummy;
+        }
+        return dummy;
+    }
+
+    /**
+     * True if a stored value should be replaced by a fresh hash after a
+     * successful login: it is a plain password, or was hashed with well
+     * under the current work factor (e.g. on older, slower hardware). The
+     * margin keeps terminals of slightly different speeds from rehashing
+     * each other's rows back and forth.
+     */
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < getIterations() / 2;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Scales a timed run of CALIBRATION_ITERATIONS to {@code targetMillis}.
+     * Runs are repeated until the fastest one stops improving, so time spent
+     * before the JIT has compiled the hash is not counted.
+     */
+    static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        long best = Long.MAX_VALUE;
+        int sinceImproved = 0;
+        for (int i = 0; i < MAX_CALIBRATION_RUNS && sinceImproved < STABLE_RUNS; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            long elapsed = System.nanoTime() - start;
+            sinceImproved = elapsed < best * 0.95 ? 0 : sinceImproved + 1;
+            best = Math.min(best, elapsed);
+        }
+        double perIteration = (double) Math.max(best, 1) / CALIBRATION_ITERATIONS;
+        long n = (long) (targetMillis * 1_000_000L / perIteration);
+        n = n / 1_000 * 1_000; // Round to keep stored values readable
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, n));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int n) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, n, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Part of every Java 8+ runtime
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
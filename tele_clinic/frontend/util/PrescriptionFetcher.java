@@ -0,0 +1,191 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import common.CsvReader;
+import common.CsvRow;
+
+/**
+ * Reads a student's prescriptions from the file written by
+ * {@link PrescriptionWriter}. Expected CSV format (6 columns):
+ * StudentID(0),Timestamp(1),StaffID(2),StaffName(3),Medication(4),Notes(5)
+ * Rows with fewer columns (e.g. the old pipe-separated entries) are skipped.
+ * Only the requested student's rows are read, found through
+ * {@link PrescriptionIndex}.
+ *
+ * Opened histories are cached: repeat views of a student's prescriptions
+ * reuse the same {@link History}, which keeps the rows it has read, until
+ * the prescriptions file changes.
+ */
+public class PrescriptionFetcher {
+
+    private static final String FILE_NAME = "prescriptions.txt";
+
+    private static final int CACHE_SIZE = 128;
+    private static final PrescriptionEntry MALFORMED = new PrescriptionEntry("", "", "", "", "", "");
+    private static final long CACHE_TTL_MINUTES = 10;
+    private static final LookupCache<String, History> cache = new LookupCache<>(
+        "Prescription", new File(FILE_NAME), CACHE_SIZE, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+
+    /**
+     * One prescription row.
+     */
+    public static class PrescriptionEntry {
+        public final String studentId;
+        public final String timestamp;
+        public final String staffId;
+        public final String staffName;
+        public final String medication;
+        public final String notes;
+
+        PrescriptionEntry(CsvRow row) {
+            this.studentId = row.getTrimmed(0);
+            this.timestamp = row.getTrimmed(1);
+            this.staffId = row.getTrimmed(2);
+            this.staffName = row.getTrimmed(3);
+            this.medication = row.getTrimmed(4);
+            this.notes = row.getTrimmed(5);
+        }
+
+        PrescriptionEntry(String studentId, String timestamp, String staffId, String staffName, String medication, String notes) {
+            this.studentId = studentId;
+            this.timestamp = timestamp;
+            this.staffId = staffId;
+            this.staffName = staffName;
+            this.medication = medication;
+            this.notes = notes;
+        }
+    }
+
+    public static LookupCache<String, History> getCache() {
+        return cache;
+    }
+
+    /**
+     * A student's prescription history as of when it was opened, read a page
+     * at a time so a long history is never loaded all at once. Rows once
+     * read are kept, so paging back over them does not touch the file.
+     */
+    public static final class History implements ClinicRepository.PrescriptionHistory {
+        private final String studentId;
+        private final long[] offsets; // Newest first
+        private final PrescriptionEntry[] rows; // Read so far; MALFORMED for rows skipped
+
+        private History(String studentId, long[] offsets) {
+            this.studentId = studentId;
+            this.offsets = offsets;
+            this.rows = new PrescriptionEntry[offsets.length];
+        }
+
+        /**
+         * Number of rows in the history (rows that turn out malformed are
+         * skipped when read, so pages can come back shorter).
+         */
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+
+        /**
+         * Reads rows {@code from} to {@code from + count} (newest first).
+         * @return The prescriptions in that range, empty if the file cannot be read.
+         */
+        @Override
+        public synchronized List<PrescriptionEntry> page(int from, int count) {
+            int to = Math.min(offsets.length, from + count);
+            if (from >= to) {
+                return Collections.emptyList();
+            }
+            try {
+                readRows(studentId, offsets, from, to, rows);
+            } catch (IOException e) {
+                System.err.println("Error reading prescription file: " + e.getMessage());
+                return Collections.emptyList();
+            }
+            List<PrescriptionEntry> entries = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                if (rows[i] != MALFORMED) {
+                    entries.add(rows[i]);
+                }
+            }
+            return Collections.unmodifiableList(entries);
+        }
+    }
+
+    /**
+     * Opens a student's history for paged reading, or returns the cached one
+     * if the prescriptions file has not changed since it was opened. Only
+     * the index is consulted here; rows are read by {@link History#page}.
+     */
+    public static History openHistory(String studentId) {
+        String id = studentId == null ? "" : studentId.trim();
+        return cache.get(id, key -> new History(key, PrescriptionIndex.forFile(FILE_NAME).offsetsOf(key)));
+    }
+
+    /**
+     * Reads and parses the rows at {@code offsets[from, to)} that are not
+     * in {@code rows} yet; the rest of the file is not touched.
+     */
+    private static void readRows(String studentId, long[] offsets, int from, int to, PrescriptionEntry[] rows)
+            throws IOException {
+        int first = from;
+        while (first < to && rows[first] != null) {
+            first++;
+        }
+        if (first == to) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(FILE_NAME, "r")) {
+            byte[] buffer = new byte[512];
+            CsvRow row = new CsvRow();
+            for (int i = first; i < to; i++) {
+                if (rows[i] != null) {
+                    continue;
+                }
+                int length = readRow(raf, offsets[i], buffer);
+                while (length == buffer.length) { // Longer than the buffer: grow and re-read
+                    buffer = new byte[buffer.length * 2];
+                    length = readRow(raf, offsets[i], buffer);
+                }
+                try (CsvReader reader = new CsvReader(new InputStreamReader(
+                        new ByteArrayInputStream(buffer, 0, length), Charset.defaultCharset()))) {
+                    boolean valid = reader.next(row) && row.size() >= 6 && row.getTrimmed(0).equals(studentId);
+                    rows[i] = valid ? new PrescriptionEntry(row) : MALFORMED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the row starting at {@code offset} into {@code buffer}.
+     * @return The row's length up to and including its line break; if there
+     *         is none in the buffer, the bytes read ({@code buffer.length} if
+     *         the row may not have fit).
+     */
+    private static int readRow(RandomAccessFile raf, long offset, byte[] buffer) throws IOException {
+        raf.seek(offset);
+        int filled = 0;
+        int n;
+        while (filled < buffer.length && (n = raf.read(buffer, filled, buffer.length - filled)) > 0) {
+            filled += n;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < filled; i++) {
+            if (buffer[i] == '"') {
+                quoted = !quoted;
+            } else if (buffer[i] == '\n' && !quoted) {
+                return i + 1;
+            }
+        }
+        return filled;
+    }
+}
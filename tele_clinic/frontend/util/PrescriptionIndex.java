@@ -0,0 +1,216 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of prescriptions.txt from BITS ID to the file offsets of that
+ * student's rows, so a dashboard reads only the student's own rows instead
+ * of the whole history of the clinic.
+ *
+ * Like {@link CredentialIndex}, it is built with one pass over the file and
+ * then kept current incrementally: prescriptions written through
+ * {@link PrescriptionWriter} in this process are added as they are
+ * appended, and rows appended by another terminal are picked up by scanning
+ * only the new tail of the file.
+ */
+final class PrescriptionIndex {
+
+    /**
+     * Offsets of one student's rows in file order. Only the writer (under
+     * the class lock) appends; readers take {@code size} first, and the
+     * array is only ever replaced by a longer copy, so they need no lock.
+     */
+    private static final class Offsets {
+        volatile long[] offsets = new long[4];
+        volatile int size;
+
+        void add(long offset) {
+            long[] current = offsets;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                offsets = current;
+            }
+            current[size] = offset;
+            size++;
+        }
+    }
+
+    private static final long[] NO_OFFSETS = new long[0];
+
+    private final String path;
+    private final Map<String, Offsets> byStudent;
+
+    private volatile CsvTail tail;
+    private volatile long lastModified;
+
+    private static volatile PrescriptionIndex current;
+
+    private PrescriptionIndex(File file, Map<String, Offsets> byStudent) {
+        this.path = file.getAbsolutePath();
+        this.byStudent = byStudent;
+    }
+
+    /**
+     * Returns an index that matches the file on disk, catching up with
+     * appended rows or rebuilding it if the file has changed since it was
+     * last loaded.
+     */
+    static PrescriptionIndex forFile(String fileName) {
+        File file = new File(fileName);
+        PrescriptionIndex index = current;
+        if (index != null && index.matches(file)) {
+            return index;
+        }
+        synchronized (PrescriptionIndex.class) {
+            index = current;
+            if (index != null && index.matches(file)) {
+                return index;
+            }
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || !index.catchUp(file)) {
+                index = load(file);
+                current = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Called by {@link PrescriptionWriter} after appending a row at
+     * {@code rowOffset}. If the index covers the file exactly up to there,
+     * the row is added without touching the disk; otherwise the next lookup
+     * catches up from the file.
+     * @param rowBytes The row exactly as written, line terminator included.
+     */
+    static void recordAppended(String fileName, long rowOffset, byte[] rowBytes, String studentId) {
+        File file = new File(fileName);
+        synchronized (PrescriptionIndex.class) {
+            PrescriptionIndex index = current;
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || index.tail.length() != rowOffset) {
+                return;
+            }
+            index.add(studentId.trim(), rowOffset);
+            index.lastModified = file.lastModified();
+            index.tail = index.tail.advance(rowBytes);
+        }
+    }
+
+    /**
+     * Drops the index, so the next lookup reloads it from the file.
+     */
+    static void invalidate() {
+        synchronized (PrescriptionIndex.class) {
+            current = null;
+        }
+    }
+
+    /**
+     * Offsets of a student's rows, newest first.
+     */
+    long[] offsetsOf(String studentId) {
+        Offsets offsets = byStudent.get(studentId);
+        if (offsets == null) {
+            return NO_OFFSETS;
+        }
+        int size = offsets.size;
+        long[] inFileOrder = offsets.offsets;
+        long[] newestFirst = new long[size];
+        for (int i = 0; i < size; i++) {
+            newestFirst[i] = inFileOrder[size - 1 - i];
+        }
+        return newestFirst;
+    }
+
+    int size() {
+        return byStudent.size();
+    }
+
+    private boolean matches(File file) {
+        return file.length() == tail.length() && file.lastModified() == lastModified;
+    }
+
+    private void add(String studentId, long offset) {
+        byStudent.computeIfAbsent(studentId, id -> new Offsets()).add(offset);
+    }
+
+    /**
+     * Indexes one raw row under its first field. The header (offset 0) and
+     * rows without an ID are skipped; rows in the old pipe-separated layout
+     * end up under an ID no student has.
+     */
+    private void addRow(long offset, byte[] bytes, int start, int end) {
+        if (offset == 0) {
+            return;
+        }
+        String studentId = firstField(bytes, start, end);
+        if (!studentId.isEmpty()) {
+            add(studentId, offset);
+        }
+    }
+
+    /**
+     * Indexes rows appended since the last load by scanning only the new tail.
+     * @return false if the file did not simply grow, so a full reload is needed.
+     */
+    private boolean catchUp(File file) {
+        long size = file.length();
+        long modified = file.lastModified();
+        CsvTail indexed;
+        try {
+            indexed = tail.readRaw(file, size, this::addRow);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (indexed == null) {
+            return false;
+        }
+        lastModified = modified;
+        tail = indexed;
+        return true;
+    }
+
+    private static PrescriptionIndex load(File file) {
+        long modified = file.lastModified();
+        PrescriptionIndex index = new PrescriptionIndex(file, new ConcurrentHashMap<String, Offsets>());
+        long indexed;
+        try (InputStream in = new FileInputStream(file)) {
+            indexed = CsvTail.scanRows(in, 0, index::addRow);
+        } catch (IOException e) {
+            if (file.exists()) {
+                e.printStackTrace();
+            }
+            // Never keep a failed read; retry on the next lookup
+            index.tail = CsvTail.at(file, -1);
+            index.lastModified = -1;
+            return index;
+        }
+        index.tail = CsvTail.at(file, indexed);
+        index.lastModified = modified;
+        return index;
+    }
+
+    /**
+     * The first field of a raw CSV row, unquoted and trimmed.
+     */
+    private static String firstField(byte[] bytes, int start, int end) {
+        boolean quoted = false;
+        int fieldEnd = start;
+        while (fieldEnd < end) {
+            byte b = bytes[fieldEnd];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (b == ',' || b == '\r' || b == '\n')) {
+                break;
+            }
+            fieldEnd++;
+        }
+        return new String(bytes, start, fieldEnd - start, Charset.defaultCharset()).replace("\"", "").trim();
+    }
+}
@@ -1,9 +1,7 @@
 package util;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,27 +14,23 @@ public class PrescriptionWriter {
     private static final String CSV_HEADER = "StudentID,Timestamp,StaffID,StaffName,Medication,Notes";
 
     /**
-     * Appends a new prescription entry to the CSV file.
+     * Appends a new prescription entry to the CSV file through the shared
+     * {@link AppendService}; the header is written first if the file is empty.
      * @param data An array of strings: [StudentID, Timestamp, StaffID, StaffName, Medication, Notes].
      * @return true if the write was successful, false otherwise.
      */
     public static boolean writeDataToCsv(String[] data) {
-        File csvFile = new File(FILE_NAME);
-        boolean isNewFile = !csvFile.exists();
-
-        try (FileWriter fw = new FileWriter(csvFile, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-
-            if (isNewFile || fileIsEmpty(csvFile)) {
-                pw.println(CSV_HEADER);
-            }
-
-            // Simple CSV encoding (wraps fields in quotes and joins)
-            String csvLine = Stream.of(data)
-                .map(s -> "\"" + s.replace("\"", "\"\"") + "\"")
-                .collect(Collectors.joining(","));
-            
-            pw.println(csvLine);
+        // Simple CSV encoding (wraps fields in quotes and joins)
+        String csvLine = Stream.of(data)
+            .map(s -> "\"" + s.replace("\"", "\"\"") + "\"")
+            .collect(Collectors.joining(","));
+
+        try {
+            byte[] row = (csvLine + System.lineSeparator()).getBytes(Charset.defaultCharset());
+            long offset = AppendService.getInstance().appendAndWait(FILE_NAME,
+                (CSV_HEADER + System.lineSeparator()).getBytes(Charset.defaultCharset()), row);
+            // Keep the per-student index current without re-reading the file
+            PrescriptionIndex.recordAppended(FILE_NAME, offset, row, data[0]);
             return true;
 
         } catch (IOException e) {
@@ -45,9 +39,4 @@ public class PrescriptionWriter {
             return false;
         }
     }
-    
-    // Helper to check if file is empty
-    private static boolean fileIsEmpty(File file) {
-        return file.length() == 0;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compressed (radix) trie mapping string keys to values, used for
+ * as-you-type prefix suggestions. Edges carry whole label runs rather than
+ * single characters, and children are kept sorted so results come back in
+ * key order. Not thread-safe for writes; build it once, then share it for
+ * concurrent reads.
+ */
+final class RadixTrie<V> {
+
+    private static final class Node<V> {
+        String label;
+        final List<Node<V>> children = new ArrayList<>(2);
+        List<V> values;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Node<V> root = new Node<>("");
+
+    void put(String key, V value) {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            int idx = findChild(node, key.charAt(pos));
+            if (idx < 0) {
+                Node<V> leaf = new Node<>(key.substring(pos));
+                node.children.add(-idx - 1, leaf);
+                node = leaf;
+                pos = key.length();
+                break;
+            }
+
+            Node<V> child = node.children.get(idx);
+            int common = commonPrefix(child.label, key, pos);
+            if (common < child.label.length()) {
+                // Split the edge: parent -> split(label[0..common)) -> child(label[common..))
+                Node<V> split = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children.add(child);
+                node.children.set(idx, split);
+                child = split;
+            }
+            node = child;
+            pos += common;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Adds values whose key starts with {@code prefix} to {@code out}, in key
+     * order, stopping as soon as {@code out} holds {@code limit} elements.
+     */
+    void collect(String prefix, int limit, Collection<V> out) {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int idx = findChild(node, prefix.charAt(pos));
+            if (idx < 0) {
+                return;
+            }
+            Node<V> child = node.children.get(idx);
+            int common = commonPrefix(child.label, prefix, pos);
+            if (pos + common == prefix.length()) {
+                node = child; // Prefix ends inside (or at the end of) this edge
+                break;
+            }
+            if (common < child.label.length()) {
+                return; // Diverges inside the edge
+            }
+            node = child;
+            pos += common;
+        }
+        collectSubtree(node, limit, out);
+    }
+
+    private static <V> boolean collectSubtree(Node<V> node, int limit, Collection<V> out) {
+        if (node.values != null) {
+            for (V value : node.values) {
+                out.add(value);
+                if (out.size() >= limit) {
+                    return true;
+                }
+            }
+        }
+        for (Node<V> child : node.children) {
+            if (collectSubtree(child, limit, out)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Binary search on the first character of the children's labels.
+     * Returns the index, or (-(insertion point) - 1) if absent.
+     */
+    private static <V> int findChild(Node<V> node, char c) {
+        int low = 0;
+        int high = node.children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = node.children.get(mid).label.charAt(0);
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int commonPrefix(String label, String key, int keyPos) {
+        int n = Math.min(label.length(), key.length() - keyPos);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(keyPos + i)) {
+            i++;
+        }
+        return i;
+    }
+}
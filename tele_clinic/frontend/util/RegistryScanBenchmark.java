@@ -0,0 +1,97 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Measures full-scan throughput (rows/sec) of medical_registrations.csv for
+ * the BufferedReader + split() path against the memory-mapped scan.
+ * Each iteration looks up the last row's BITS ID, so both paths read the
+ * whole file.
+ *
+ * Usage: java -cp bin util.RegistryScanBenchmark [rows] [iterations]
+ */
+public class RegistryScanBenchmark {
+
+    private static final String CSV_HEADER =
+        "FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramNo,BloodType,Allergies,ChronicIllnesses,InsuranceType,GuardianName,GuardianContact";
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File csv = File.createTempFile("registry-bench", ".csv");
+        csv.deleteOnExit();
+        String lastId = generate(csv, rows);
+        System.out.printf(Locale.ROOT, "Generated %,d rows (%,d bytes) in %s%n", rows, csv.length(), csv);
+
+        // Warm up both paths so the JIT has compiled them before timing
+        readerScan(csv, lastId);
+        MappedRegistryScanner.findRow(csv, lastId);
+
+        for (int i = 1; i <= iterations; i++) {
+            long t0 = System.nanoTime();
+            String[] a = readerScan(csv, lastId);
+            long t1 = System.nanoTime();
+            String[] b = MappedRegistryScanner.findRow(csv, lastId);
+            long t2 = System.nanoTime();
+
+            if (a == null || b == null) {
+                throw new IllegalStateException("Benchmark row not found");
+            }
+            System.out.printf(Locale.ROOT, "Run %d: BufferedReader %,.0f rows/sec | mapped %,.0f rows/sec%n",
+                i, rowsPerSecond(rows, t1 - t0), rowsPerSecond(rows, t2 - t1));
+        }
+    }
+
+    private static double rowsPerSecond(int rows, long nanos) {
+        return rows / (nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * The original fetchStudentData scan, minus its per-row console output
+     * (which would otherwise dominate the measurement).
+     */
+    private static String[] readerScan(File csv, String bitsId) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(csv))) {
+            br.readLine(); // Skip header
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                if (parts.length < 2) {
+                    continue;
+                }
+                String storedBitsId = parts[1].trim();
+                if (storedBitsId.length() >= 2 && storedBitsId.startsWith("\"") && storedBitsId.endsWith("\"")) {
+                    storedBitsId = storedBitsId.substring(1, storedBitsId.length() - 1).trim();
+                }
+                if (storedBitsId.equalsIgnoreCase(bitsId.trim())) {
+                    return parts;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String generate(File csv, int rows) throws IOException {
+        String[] bloodTypes = { "A+", "A-", "B+", "B-", "O+", "O-", "AB+", "AB-" };
+        String lastId = null;
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(csv))) {
+            w.write(CSV_HEADER);
+            w.newLine();
+            for (int i = 0; i < rows; i++) {
+                lastId = String.format(Locale.ROOT, "20%02dA7PS%04dU", 20 + i % 6, i % 10_000) + i / 10_000;
+                w.write("\"Student " + i + "\",\"" + lastId + "\",\"Other\",\"f" + i + "@dubai.bits-pilani.ac.in\","
+                    + "\"+971 500000000\",\"+971 500000000\",\"" + bloodTypes[i % bloodTypes.length] + "\","
+                    + "\"N/A\",\"N/A\",\"Institute Insurance\",\"Guardian " + i + "\",\"+971 500000001\"");
+                w.newLine();
+            }
+        }
+        return lastId;
+    }
+}
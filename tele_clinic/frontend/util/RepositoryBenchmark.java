@@ -0,0 +1,237 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the CSV and JDBC {@link ClinicRepository} backends at several
+ * registry sizes (default 10k, 100k and 1M students, with as many
+ * prescriptions spread over a tenth of them):
+ * <ul>
+ * <li>startup: opening the backend and serving the first student and
+ *     prescription lookups (for JDBC also the one-off import of the CSVs)</li>
+ * <li>lookups: random students by BITS ID, and the first history page of
+ *     random students</li>
+ * <li>appends: new registrations and prescriptions</li>
+ * </ul>
+ * Latencies are reported as p50/p99. Credentials are left out (PBKDF2
+ * dominates both backends alike), as are emergency events (see
+ * {@link EmergencyLogBenchmark}).
+ *
+ * The CSV backend works on medical_registrations.csv and prescriptions.txt
+ * (and its journal, see {@link ClinicJournal}) in the current directory, so run this from an empty directory; it stops
+ * if those files exist. The JDBC backend runs when a driver accepts
+ * {@code -Dclinic.repository.url} (default {@code jdbc:h2:./repository_bench},
+ * suffixed with the size; put the H2 jar on the classpath) and the database
+ * does not exist yet.
+ *
+ * Usage: java -cp bin[:h2.jar] util.RepositoryBenchmark [students...]
+ */
+public class RepositoryBenchmark {
+
+    private static final String STUDENTS_CSV = "medical_registrations.csv";
+    private static final String PRESCRIPTIONS_CSV = "prescriptions.txt";
+    private static final String STUDENTS_HEADER =
+        "FullName,BITS_ID,Gender,BITS_Email,MobileNo,TelegramNo,BloodType,Allergies,ChronicIllnesses,InsuranceType,GuardianName,GuardianContact";
+    private static final String PRESCRIPTIONS_HEADER = "StudentID,Timestamp,StaffID,StaffName,Medication,Notes";
+
+    private static final int LOOKUPS = 10_000;
+    private static final int HISTORY_LOOKUPS = 2_000;
+    private static final int APPENDS = 1_000;
+    private static final int PAGE = 20;
+
+    // The fetchers and writers log every call; results go to the real stdout
+    private static final PrintStream out = System.out;
+    private static final PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 10_000, 100_000, 1_000_000 };
+        if (new File(STUDENTS_CSV).exists() || new File(PRESCRIPTIONS_CSV).exists()) {
+            System.err.println("Run from an empty directory: " + STUDENTS_CSV + " or " + PRESCRIPTIONS_CSV + " already exists here.");
+            System.exit(1);
+        }
+        String baseUrl = System.getProperty("clinic.repository.url", "jdbc:h2:./repository_bench");
+
+        try {
+            for (int students : sizes) {
+                generate(students);
+                out.printf(Locale.ROOT, "%n== %,d students, %,d prescriptions ==%n", students, students);
+
+                StudentRegistryIndex.invalidate();
+                PrescriptionIndex.invalidate();
+                StudentDataFetcher.getStudentCache().clear();
+                run("csv", students, () -> new CsvClinicRepository());
+
+                String url = baseUrl + "_" + students;
+                if (!hasDriver(url)) {
+                    out.println("jdbc: skipped, no JDBC driver for " + url + " on the classpath");
+                    continue;
+                }
+                run("jdbc", students, () -> JdbcClinicRepository.open(url));
+            }
+        } finally {
+            System.setOut(out);
+            new File(STUDENTS_CSV).delete();
+            new File(PRESCRIPTIONS_CSV).delete();
+            for (String journalFile : new String[] { "clinic_journal.log", "clinic_journal.snapshot", "clinic_journal.lock" }) {
+                new File(journalFile).delete();
+            }
+        }
+    }
+
+    private interface Opener {
+        ClinicRepository open() throws Exception;
+    }
+
+    private static void run(String name, int students, Opener opener) throws Exception {
+        Random random = new Random(42);
+        System.setOut(quiet);
+        ClinicRepository repository;
+        long t0 = System.nanoTime();
+        try {
+            repository = opener.open();
+            if (repository instanceof JdbcClinicRepository && ((JdbcClinicRepository) repository).countStudents() != students) {
+                System.setOut(out);
+                out.println(name + ": skipped, the database already existed; delete it and run again");
+                ((JdbcClinicRepository) repository).close();
+                return;
+            }
+            require(repository.findStudent(bitsId(random.nextInt(students))).isPresent());
+            repository.openPrescriptionHistory(bitsId(random.nextInt(students / 10 + 1) * 10)).page(0, PAGE);
+        } finally {
+            System.setOut(out);
+        }
+        out.printf(Locale.ROOT, "%-4s startup                %9.1f ms%n", name, (System.nanoTime() - t0) / 1_000_000.0);
+
+        System.setOut(quiet);
+        long[] lookups = new long[LOOKUPS];
+        long[] histories = new long[HISTORY_LOOKUPS];
+        long[] studentAppends = new long[APPENDS];
+        long[] prescriptionAppends = new long[APPENDS];
+        try {
+            for (int i = 0; i < LOOKUPS; i++) {
+                String id = bitsId(random.nextInt(students));
+                long start = System.nanoTime();
+                require(repository.findStudent(id).isPresent());
+                lookups[i] = System.nanoTime() - start;
+            }
+            for (int i = 0; i < HISTORY_LOOKUPS; i++) {
+                String id = bitsId(random.nextInt(students / 10 + 1) * 10);
+                long start = System.nanoTime();
+                repository.openPrescriptionHistory(id).page(0, PAGE);
+                histories[i] = System.nanoTime() - start;
+            }
+            for (int i = 0; i < APPENDS; i++) {
+                String[] registration = registration(students + i + (name.equals("csv") ? 0 : APPENDS));
+                long start = System.nanoTime();
+                require(repository.addStudent(registration));
+                studentAppends[i] = System.nanoTime() - start;
+            }
+            for (int i = 0; i < APPENDS; i++) {
+                String[] prescription = prescription(random.nextInt(students), i);
+                long start = System.nanoTime();
+                require(repository.addPrescription(prescription));
+                prescriptionAppends[i] = System.nanoTime() - start;
+            }
+        } finally {
+            System.setOut(out);
+        }
+        report(name, "student lookup", lookups);
+        report(name, "history page lookup", histories);
+        report(name, "student append", studentAppends);
+        report(name, "prescription append", prescriptionAppends);
+
+        if (repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+    }
+
+    private static boolean hasDriver(String url) {
+        try {
+            DriverManager.getDriver(url);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void report(String name, String operation, long[] latencies) {
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        Arrays.sort(latencies);
+        out.printf(Locale.ROOT, "%-4s %-22s p50 %8.3f ms | p99 %8.3f ms | %9.0f ops/sec%n", name, operation,
+            millis(latencies, 0.50), millis(latencies, 0.99), latencies.length / (total / 1_000_000_000.0));
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(i, 0)] / 1_000_000.0;
+    }
+
+    private static void require(boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException("Benchmark operation failed");
+        }
+    }
+
+    /**
+     * Writes the registry and prescription files for {@code students}
+     * students; prescriptions go to every tenth student.
+     */
+    private static void generate(int students) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(STUDENTS_CSV), 1 << 16)) {
+            writer.write(STUDENTS_HEADER);
+            writer.newLine();
+            for (int i = 0; i < students; i++) {
+                writer.write(csvLine(registration(i)));
+                writer.newLine();
+            }
+        }
+        Random random = new Random(7);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(PRESCRIPTIONS_CSV), 1 << 16)) {
+            writer.write(PRESCRIPTIONS_HEADER);
+            writer.newLine();
+            for (int i = 0; i < students; i++) {
+                writer.write(csvLine(prescription(random.nextInt(students / 10 + 1) * 10, i)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String bitsId(int n) {
+        return String.format(Locale.ROOT, "2024A7PS%07dU", n);
+    }
+
+    private static String[] registration(int n) {
+        String id = bitsId(n);
+        return new String[] { "Student " + n, id, n % 2 == 0 ? "Male" : "Female", id.toLowerCase(Locale.ROOT) + "@dubai.bits-pilani.ac.in",
+            "+971 50" + (1000000 + n % 9000000), "+971 55" + (1000000 + n % 9000000), "O+", "None", "None", "Basic",
+            "Guardian " + n, "+971 52" + (1000000 + n % 9000000) };
+    }
+
+    private static String[] prescription(int student, int n) {
+        return new String[] { bitsId(student), "2025-01-01 10:00:00", "ADMIN_001", "Clinic Staff", "Paracetamol 500mg #" + n,
+            "Twice a day for 5 days" };
+    }
+
+    private static String csvLine(String[] fields) {
+        StringBuilder line = new StringBuilder();
+        for (String field : fields) {
+            line.append(line.length() == 0 ? "\"" : ",\"").append(field.replace("\"", "\"\"")).append('"');
+        }
+        return line.toString();
+    }
+}
@@ -1,11 +1,25 @@
 package util;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import common.OffHeapRecordStore;
+import common.RegistrySnapshot;
+import common.StudentRegistry;
+
 /**
  * Utility class to read student medical and personal details from the CSV file.
  * The expected CSV format (12 columns):
@@ -14,8 +28,66 @@ import java.util.function.Function;
 public class StudentDataFetcher {
 
 	private static final String FILE_NAME = "medical_registrations.csv";
-	// BITS_ID is at index 1 (FullName is at 0)
-	private static final int BITS_ID_INDEX = 1;
+
+	/**
+	 * How lookups are served.
+	 * INDEXED keeps the whole registry on heap for O(1) lookups;
+	 * MAPPED_SCAN memory-maps the CSV and scans it on every lookup without
+	 * keeping anything on heap, for cold lookups or memory-constrained hosts;
+	 * SNAPSHOT binary-searches the memory-mapped registry snapshot, which
+	 * opens in milliseconds and is rebuilt only when the CSV changes;
+	 * OFF_HEAP keeps the rows in direct memory, outside the GC's reach, for
+	 * very large registries.
+	 */
+	public enum LookupMode { INDEXED, MAPPED_SCAN, SNAPSHOT, OFF_HEAP }
+
+	// Snapshot or off-heap store, depending on the lookup mode
+	private static StudentRegistry registry;
+
+	// Staff flip between a handful of students during a shift
+	private static final int STUDENT_CACHE_SIZE = 256;
+	private static final long STUDENT_CACHE_TTL_MINUTES = 10;
+	private static final LookupCache<String, StudentMedicalData> studentCache = new LookupCache<>(
+		"Student", new File(FILE_NAME), STUDENT_CACHE_SIZE, STUDENT_CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+
+	// Background lookups; cached so a new search never queues behind an older one
+	private static final ExecutorService lookupExecutor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "StudentLookupThread");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// Can be preset with -Dclinic.registry.mode=MAPPED_SCAN
+	private static volatile LookupMode lookupMode = lookupModeProperty();
+
+	/**
+	 * The mode named by {@code -Dclinic.registry.mode}; a name that is not
+	 * a mode is reported and INDEXED used instead, so a typo cannot stop
+	 * the class from loading.
+	 */
+	private static LookupMode lookupModeProperty() {
+		String name = System.getProperty("clinic.registry.mode", LookupMode.INDEXED.name());
+		try {
+			return LookupMode.valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			System.err.println("[StudentDataFetcher] ✗ Unknown clinic.registry.mode '" + name + "', using INDEXED");
+			return LookupMode.INDEXED;
+		}
+	}
+
+	public static LookupMode getLookupMode() {
+		return lookupMode;
+	}
+
+	public static void setLookupMode(LookupMode mode) {
+		lookupMode = mode;
+		if (mode != LookupMode.INDEXED) {
+			StudentRegistryIndex.invalidate(); // Release the heap copy
+		}
+		synchronized (StudentDataFetcher.class) {
+			registry = null; // Reopened for the new mode on the next lookup
+		}
+	}
 
 	/**
 	 * Data class to hold the retrieved student details.
@@ -81,71 +153,251 @@ public class StudentDataFetcher {
 			this.guardianName = getPartSafely.apply(10);
 			this.guardianContact = getPartSafely.apply(11);
 
-			// DEBUG: Print loaded data
-			System.out.println("[StudentDataFetcher] ✓ Loaded data for: " + this.fullName);
-			System.out.println("   - Gender: " + this.gender);
-			System.out.println("   - Blood Type: " + this.bloodType);
-			System.out.println("   - Allergies: " + this.allergies);
-			System.out.println("   - Guardian: " + this.guardianName + " (" + this.guardianContact + ")");
 		}
 	}
 
 	/**
 	 * Fetches the medical data record for a given BITS ID.
+	 * Recently viewed students are served from a small LRU cache with a TTL.
+	 * In INDEXED mode this is served from the in-memory registry index, which
+	 * is reloaded only when the CSV file's size or modification time changes.
+	 * In MAPPED_SCAN mode the file is scanned in place and only the matching
+	 * row is decoded. In SNAPSHOT and OFF_HEAP modes the binary snapshot or
+	 * the off-heap store is searched.
 	 * @param bitsId The BITS ID to search for.
 	 * @return An Optional containing the StudentMedicalData object if found.
 	 */
 	public static Optional<StudentMedicalData> fetchStudentData(String bitsId) {
 		System.out.println("[StudentDataFetcher] Searching for BITS ID: " + bitsId);
+		if (bitsId == null) {
+			return Optional.empty();
+		}
 
-		try (BufferedReader br = new BufferedReader(new FileReader(FILE_NAME))) {
-			String line;
-			int lineNum = 0;
+		StudentMedicalData data = studentCache.get(StudentRegistryIndex.normalize(bitsId), key -> lookup(bitsId));
+		if (data == null) {
+			System.err.println("[StudentDataFetcher] ✗ BITS ID NOT FOUND: " + bitsId);
+			return Optional.empty();
+		}
 
-			// Skip header
-			line = br.readLine();
-			if (line != null) {
-				lineNum++;
-				System.out.println("[StudentDataFetcher] ✓ Skipped header: " + line);
-			}
+		// DEBUG: Print loaded data
+		System.out.println("[StudentDataFetcher] ✓ Loaded data for: " + data.fullName);
+		System.out.println("   - Gender: " + data.gender);
+		System.out.println("   - Blood Type: " + data.bloodType);
+		System.out.println("   - Allergies: " + data.allergies);
+		System.out.println("   - Guardian: " + data.guardianName + " (" + data.guardianContact + ")");
+		return Optional.of(data);
+	}
 
-			// Read data lines
-			while ((line = br.readLine()) != null) {
-				lineNum++;
+	private static StudentMedicalData lookup(String bitsId) {
+		LookupMode mode = lookupMode;
+		if (mode == LookupMode.MAPPED_SCAN) {
+			return scanMapped(bitsId);
+		} else if (mode == LookupMode.SNAPSHOT || mode == LookupMode.OFF_HEAP) {
+			return searchRegistry(bitsId);
+		} else {
+			return StudentRegistryIndex.forFile(FILE_NAME).get(bitsId);
+		}
+	}
 
-				// Use split with -1 limit to keep trailing empty strings
-				String[] parts = line.split(",", -1);
+	/**
+	 * Cache of recently viewed students in front of every lookup mode.
+	 * It is dropped whenever medical_registrations.csv changes.
+	 */
+	public static LookupCache<String, StudentMedicalData> getStudentCache() {
+		return studentCache;
+	}
 
-				if (parts.length < 2) {
-					System.out.println("[StudentDataFetcher] Line " + lineNum + ": Skipped (insufficient columns)");
-					continue;
-				}
+	/**
+	 * Runs {@link #fetchStudentData(String)} on a background thread, so UI
+	 * code never blocks on a registry load or scan. Cancelling the returned
+	 * future before the lookup starts skips it; a lookup that is already
+	 * running finishes, but its result is discarded.
+	 * @param bitsId The BITS ID to search for.
+	 * @return A future completed with the lookup result.
+	 */
+	public static CompletableFuture<Optional<StudentMedicalData>> fetchStudentDataAsync(String bitsId) {
+		CompletableFuture<Optional<StudentMedicalData>> result = new CompletableFuture<>();
+		lookupExecutor.execute(() -> {
+			if (result.isDone()) {
+				return; // Cancelled while queued
+			}
+			try {
+				result.complete(fetchStudentData(bitsId));
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
 
-				// Get the BITS ID part and clean it for comparison
-				String storedBitsIdPart = parts[BITS_ID_INDEX];
-				String storedBitsId = storedBitsIdPart.trim();
+	/**
+	 * Fetches the medical data records for many BITS IDs at once, e.g. for
+	 * clinic rosters or re-sending alerts. INDEXED, SNAPSHOT and OFF_HEAP modes probe
+	 * their index once per ID; MAPPED_SCAN resolves the whole batch in a
+	 * single pass over the file, so no mode rescans the registry per ID.
+	 * @param bitsIds The BITS IDs to search for.
+	 * @return Records keyed by the requested ID, in request order; IDs that
+	 *         were not found are absent.
+	 */
+	public static Map<String, StudentMedicalData> fetchStudentData(Collection<String> bitsIds) {
+		Map<String, StudentMedicalData> result = new LinkedHashMap<>();
+		if (bitsIds == null || bitsIds.isEmpty()) {
+			return result;
+		}
 
-				// Apply the same quote stripping logic for robust comparison
-				if (storedBitsId.length() >= 2 && storedBitsId.startsWith("\"") && storedBitsId.endsWith("\"")) {
-					storedBitsId = storedBitsId.substring(1, storedBitsId.length() - 1).trim();
+		LookupMode mode = lookupMode;
+		if (mode == LookupMode.MAPPED_SCAN) {
+			Map<String, String[]> rows = scanMappedBatch(bitsIds);
+			Map<String, StudentMedicalData> parsed = new HashMap<>();
+			for (String bitsId : bitsIds) {
+				String key = StudentRegistryIndex.normalize(bitsId);
+				String[] parts = rows.get(key);
+				if (parts != null) {
+					StudentMedicalData data = parsed.computeIfAbsent(key, k -> new StudentMedicalData(parts));
+					result.put(bitsId, data);
 				}
-
-				System.out.println("[StudentDataFetcher] Line " + lineNum + ": Checking BITS_ID=" + storedBitsId);
-
-				// Case-insensitive comparison
-				if (storedBitsId.equalsIgnoreCase(bitsId.trim())) {
-					System.out.println("[StudentDataFetcher] ✓ MATCH FOUND! Creating StudentMedicalData...");
-					return Optional.of(new StudentMedicalData(parts));
+			}
+		} else if (mode == LookupMode.SNAPSHOT || mode == LookupMode.OFF_HEAP) {
+			StudentRegistry current = currentRegistry();
+			if (current != null) {
+				for (String bitsId : bitsIds) {
+					String[] parts = current.find(bitsId);
+					if (parts != null) {
+						result.put(bitsId, new StudentMedicalData(parts));
+					}
 				}
 			}
+		} else {
+			StudentRegistryIndex index = StudentRegistryIndex.forFile(FILE_NAME);
+			for (String bitsId : bitsIds) {
+				StudentMedicalData data = index.get(bitsId);
+				if (data != null) {
+					result.put(bitsId, data);
+				}
+			}
+		}
 
-			System.err.println("[StudentDataFetcher] ✗ BITS ID NOT FOUND: " + bitsId);
+		System.out.println("[StudentDataFetcher] ✓ Batch lookup: found " + result.size() + " of " + bitsIds.size() + " BITS IDs");
+		return result;
+	}
 
+	private static StudentMedicalData scanMapped(String bitsId) {
+		File file = new File(FILE_NAME);
+		if (!file.exists()) {
+			System.err.println("[StudentDataFetcher] ✗ Registry file not found: " + file.getAbsolutePath());
+			return null;
+		}
+		try {
+			String[] parts = MappedRegistryScanner.findRow(file, bitsId);
+			return parts == null ? null : new StudentMedicalData(parts);
 		} catch (IOException e) {
 			System.err.println("[StudentDataFetcher] ✗ ERROR reading CSV: " + e.getMessage());
 			e.printStackTrace();
+			return null;
 		}
+	}
+
+	private static StudentMedicalData searchRegistry(String bitsId) {
+		StudentRegistry current = currentRegistry();
+		String[] parts = current == null ? null : current.find(bitsId);
+		return parts == null ? null : new StudentMedicalData(parts);
+	}
 
-		return Optional.empty();
+	private static Map<String, String[]> scanMappedBatch(Collection<String> bitsIds) {
+		File file = new File(FILE_NAME);
+		if (!file.exists()) {
+			System.err.println("[StudentDataFetcher] ✗ Registry file not found: " + file.getAbsolutePath());
+			return Collections.emptyMap();
+		}
+		try {
+			return MappedRegistryScanner.findRows(file, bitsIds);
+		} catch (IOException e) {
+			System.err.println("[StudentDataFetcher] ✗ ERROR reading CSV: " + e.getMessage());
+			e.printStackTrace();
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Returns the mapped registry snapshot or the off-heap store for the
+	 * current mode, reopening it if the CSV changed.
+	 * @return The registry, or null if it could not be opened.
+	 */
+	private static synchronized StudentRegistry currentRegistry() {
+		File file = new File(FILE_NAME);
+		if (!file.exists()) {
+			System.err.println("[StudentDataFetcher] ✗ Registry file not found: " + file.getAbsolutePath());
+			return null;
+		}
+		try {
+			if (registry == null || !registry.isCurrent()) {
+				if (lookupMode == LookupMode.OFF_HEAP) {
+					OffHeapRecordStore store = OffHeapRecordStore.load(file);
+					registry = store;
+					System.out.println("[StudentDataFetcher] ✓ Loaded " + store.size() + " records off-heap ("
+						+ store.offHeapBytes() / 1024 + " KB direct memory)");
+				} else {
+					registry = RegistrySnapshot.open(file);
+					System.out.println("[StudentDataFetcher] ✓ Opened registry snapshot with " + registry.size() + " records");
+				}
+			}
+			return registry;
+		} catch (IOException e) {
+			System.err.println("[StudentDataFetcher] ✗ ERROR opening registry: " + e.getMessage());
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * As-you-type suggestions for staff lookups: students whose BITS ID starts
+	 * with {@code query}, then students whose name (or a word of it) does.
+	 * Served from a radix trie built over the in-memory registry index, so
+	 * this is not available in the MAPPED_SCAN and OFF_HEAP modes, which
+	 * keep the registry off the heap. Call it off the EDT: the
+	 * first call after a registry change loads the index.
+	 * @param limit Maximum number of suggestions to return.
+	 */
+	public static List<StudentMedicalData> suggestStudents(String query, int limit) {
+		LookupMode mode = lookupMode;
+		if (mode == LookupMode.MAPPED_SCAN || mode == LookupMode.OFF_HEAP) {
+			return Collections.emptyList();
+		}
+		return StudentRegistryIndex.forFile(FILE_NAME).prefixIndex().suggest(query, limit);
+	}
+
+	/**
+	 * Finds all students matching a query over blood type, allergies and
+	 * chronic illnesses, e.g. during a campus incident. Answered from bitmap
+	 * indexes kept next to the in-memory registry index. The MAPPED_SCAN and
+	 * OFF_HEAP modes keep the registry off the heap, so there the index is
+	 * loaded for each query and released after it: every query re-reads the
+	 * CSV instead of keeping a heap copy for the life of the process.
+	 * @return The matching students, in the order they were registered
+	 *         (first registration of each BITS ID).
+	 */
+	public static List<StudentMedicalData> findStudents(StudentQuery query) {
+		List<StudentMedicalData> result = queryConditions(index -> index.find(query));
+		System.out.println("[StudentDataFetcher] ✓ Query " + query + ": " + result.size() + " students");
+		return result;
+	}
+
+	/**
+	 * Counts the students matching a query without materializing them
+	 * (loading the index as {@link #findStudents} does).
+	 */
+	public static int countStudents(StudentQuery query) {
+		return queryConditions(index -> index.count(query));
+	}
+
+	private static <T> T queryConditions(Function<MedicalConditionIndex, T> query) {
+		LookupMode mode = lookupMode;
+		try {
+			return query.apply(StudentRegistryIndex.forFile(FILE_NAME).conditionIndex());
+		} finally {
+			if (mode == LookupMode.MAPPED_SCAN || mode == LookupMode.OFF_HEAP) {
+				StudentRegistryIndex.invalidate(); // Release the heap copy again
+			}
+		}
 	}
 }
@@ -0,0 +1,68 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * Prefix index over the registry for Quick Lookup suggestions.
+ * Students are reachable by BITS ID prefix and by the prefix of their full
+ * name or of any later word in it (so "soni" finds "Himesh Soni").
+ * Reads and additions are synchronized, since the registry index adds
+ * students to it as they register.
+ */
+final class StudentPrefixIndex {
+
+    private final RadixTrie<StudentMedicalData> byId = new RadixTrie<>();
+    private final RadixTrie<StudentMedicalData> byName = new RadixTrie<>();
+
+    StudentPrefixIndex(Iterable<StudentMedicalData> records) {
+        for (StudentMedicalData data : records) {
+            add(data);
+        }
+    }
+
+    /**
+     * Indexes one more student, e.g. a registration appended after the
+     * index was built.
+     */
+    synchronized void add(StudentMedicalData data) {
+        byId.put(StudentRegistryIndex.normalize(data.bitsId), data);
+
+        String name = normalizeName(data.fullName);
+        if (name.isEmpty() || name.equals("n/a")) {
+            return;
+        }
+        byName.put(name, data);
+        for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+            if (i + 1 < name.length() && name.charAt(i + 1) != ' ') {
+                byName.put(name.substring(i + 1), data);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} students whose BITS ID starts with the query,
+     * followed by students whose name (or a word in it) starts with it.
+     */
+    synchronized List<StudentMedicalData> suggest(String query, int limit) {
+        Set<StudentMedicalData> out = new LinkedHashSet<>();
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.isEmpty() || limit <= 0) {
+            return new ArrayList<>(out);
+        }
+        byId.collect(StudentRegistryIndex.normalize(trimmed), limit, out);
+        if (out.size() < limit) {
+            byName.collect(normalizeName(trimmed), limit, out);
+        }
+        return new ArrayList<>(out);
+    }
+
+    private static String normalizeName(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,97 @@
+package util;
+
+import java.util.BitSet;
+
+import util.MedicalConditionIndex.Column;
+
+/**
+ * A filter over the registry's medical columns, for incident queries such as
+ * "all O- students" or "everyone with a penicillin allergy or asthma":
+ * <pre>
+ * StudentQuery query = StudentQuery.allergy("penicillin").or(StudentQuery.chronicIllness("asthma"));
+ * List&lt;StudentMedicalData&gt; students = StudentDataFetcher.findStudents(query);
+ * </pre>
+ * Values are matched case-insensitively; see {@link MedicalConditionIndex}
+ * for how blood types and free-text terms are normalized.
+ */
+public abstract class StudentQuery {
+
+    StudentQuery() {
+    }
+
+    public static StudentQuery bloodType(String bloodType) {
+        return new Match(Column.BLOOD_TYPE, bloodType);
+    }
+
+    public static StudentQuery allergy(String allergy) {
+        return new Match(Column.ALLERGIES, allergy);
+    }
+
+    public static StudentQuery chronicIllness(String illness) {
+        return new Match(Column.CHRONIC_ILLNESSES, illness);
+    }
+
+    /** Students matching both this query and {@code other}. */
+    public StudentQuery and(StudentQuery other) {
+        return new Combine(this, other, true);
+    }
+
+    /** Students matching this query, {@code other}, or both. */
+    public StudentQuery or(StudentQuery other) {
+        return new Combine(this, other, false);
+    }
+
+    /**
+     * Returns the matching row ordinals. The result may be shared with the
+     * index and must not be modified.
+     */
+    abstract BitSet evaluate(MedicalConditionIndex index);
+
+    private static final class Match extends StudentQuery {
+        private final Column column;
+        private final String value;
+
+        Match(Column column, String value) {
+            this.column = column;
+            this.value = value;
+        }
+
+        @Override
+        BitSet evaluate(MedicalConditionIndex index) {
+            return index.lookup(column, value);
+        }
+
+        @Override
+        public String toString() {
+            return column + "=" + value;
+        }
+    }
+
+    private static final class Combine extends StudentQuery {
+        private final StudentQuery left;
+        private final StudentQuery right;
+        private final boolean and;
+
+        Combine(StudentQuery left, StudentQuery right, boolean and) {
+            this.left = left;
+            this.right = right;
+            this.and = and;
+        }
+
+        @Override
+        BitSet evaluate(MedicalConditionIndex index) {
+            BitSet result = (BitSet) left.evaluate(index).clone();
+            if (and) {
+                result.and(right.evaluate(index));
+            } else {
+                result.or(right.evaluate(index));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + (and ? " AND " : " OR ") + right + ")";
+        }
+    }
+}
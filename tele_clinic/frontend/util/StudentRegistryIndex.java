@@ -0,0 +1,226 @@
+package util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.CsvReader;
+import common.CsvRow;
+import util.StudentDataFetcher.StudentMedicalData;
+
+/**
+ * In-memory index of medical_registrations.csv keyed by normalized BITS ID.
+ * The index is built once and then kept current incrementally: registrations
+ * written by {@link MedicalDataWriter} in this process are added as they are
+ * appended, and rows appended by another process are picked up by reading
+ * only the bytes past the indexed length. The file is re-read in full only
+ * if it shrank or was rewritten.
+ */
+final class StudentRegistryIndex {
+
+    private final String path;
+    private final Map<String, StudentMedicalData> byBitsId;
+    private final List<StudentMedicalData> inFileOrder; // Guarded by this
+    private StudentPrefixIndex prefixIndex; // Guarded by this
+    private MedicalConditionIndex conditionIndex; // Guarded by this
+
+    // File prefix reflected in the index (always at a row boundary), and the
+    // modification time seen when it was last brought up to date
+    private volatile CsvTail tail;
+    private volatile long lastModified;
+
+    private static volatile StudentRegistryIndex current;
+
+    private StudentRegistryIndex(File file, CsvTail tail, long lastModified, Map<String, StudentMedicalData> byBitsId,
+            List<StudentMedicalData> inFileOrder) {
+        this.path = file.getAbsolutePath();
+        this.tail = tail;
+        this.lastModified = lastModified;
+        this.byBitsId = byBitsId;
+        this.inFileOrder = inFileOrder;
+    }
+
+    /**
+     * Returns an index that matches the file on disk, catching up with
+     * appended rows or rebuilding it if the file has changed since it was
+     * last loaded.
+     */
+    static StudentRegistryIndex forFile(String fileName) {
+        File file = new File(fileName);
+        StudentRegistryIndex index = current;
+        if (index != null && index.matches(file)) {
+            return index;
+        }
+        synchronized (StudentRegistryIndex.class) {
+            index = current;
+            if (index != null && index.matches(file)) {
+                return index;
+            }
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || !index.catchUp(file)) {
+                index = load(file);
+                current = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Drops the cached index so the next lookup reloads the file.
+     */
+    static void invalidate() {
+        current = null;
+    }
+
+    /**
+     * Called by {@link MedicalDataWriter} after appending a registration.
+     * If the index covers the file exactly up to {@code recordOffset}, the
+     * record is added and the index moves past it without touching the disk. Otherwise (no index yet, a header was written, or
+     * another process appended in between) nothing is done here and the next
+     * lookup catches up from the file.
+     * @param recordOffset File offset the record was written at.
+     * @param recordBytes The record exactly as written, line terminator included.
+     */
+    static void recordAppended(String fileName, long recordOffset, byte[] recordBytes, String[] fields) {
+        File file = new File(fileName);
+        synchronized (StudentRegistryIndex.class) {
+            StudentRegistryIndex index = current;
+            if (index == null || !index.path.equals(file.getAbsolutePath()) || index.tail.length() != recordOffset) {
+                return;
+            }
+            index.add(new StudentMedicalData(fields));
+            index.lastModified = file.lastModified();
+            index.tail = index.tail.advance(recordBytes);
+        }
+    }
+
+    /**
+     * Normalizes a BITS ID for comparison: trimmed and upper-cased,
+     * matching the case-insensitive comparison used by the CSV scan.
+     */
+    static String normalize(String bitsId) {
+        return bitsId == null ? "" : bitsId.trim().toUpperCase(Locale.ROOT);
+    }
+
+    StudentMedicalData get(String bitsId) {
+        return byBitsId.get(normalize(bitsId));
+    }
+
+    int size() {
+        return byBitsId.size();
+    }
+
+    /**
+     * Prefix index over the registry, built on first use and kept up to
+     * date as records are added.
+     */
+    synchronized StudentPrefixIndex prefixIndex() {
+        if (prefixIndex == null) {
+            prefixIndex = new StudentPrefixIndex(byBitsId.values());
+        }
+        return prefixIndex;
+    }
+
+    /**
+     * Bitmap indexes over the medical columns, built on first use (with row
+     * ordinals in file order) and kept up to date as records are added.
+     */
+    synchronized MedicalConditionIndex conditionIndex() {
+        if (conditionIndex == null) {
+            conditionIndex = new MedicalConditionIndex(inFileOrder);
+        }
+        return conditionIndex;
+    }
+
+    private synchronized void add(StudentMedicalData data) {
+        // Keep the first registration for an ID, as the sequential scan did
+        if (byBitsId.putIfAbsent(normalize(data.bitsId), data) != null) {
+            return;
+        }
+        inFileOrder.add(data);
+        if (prefixIndex != null) {
+            prefixIndex.add(data);
+        }
+        if (conditionIndex != null) {
+            conditionIndex.add(data);
+        }
+    }
+
+    private boolean matches(File file) {
+        return file.length() == tail.length() && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Indexes rows appended since the last load by reading only the new
+     * tail of the file. A trailing row that is still being written is left
+     * for the next call.
+     * @return false if the file did not simply grow, so a full reload is needed.
+     */
+    private boolean catchUp(File file) {
+        long size = file.length();
+        long modified = file.lastModified();
+        int[] added = new int[1];
+        CsvTail indexed;
+        try {
+            indexed = tail.read(file, size, row -> {
+                if (row.size() >= 2) {
+                    add(new StudentMedicalData(row.toArray()));
+                    added[0]++;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("[StudentDataFetcher] ✗ ERROR reading CSV: " + e.getMessage());
+            return false;
+        }
+        if (indexed == null) {
+            return false;
+        }
+
+        lastModified = modified;
+        tail = indexed;
+        System.out.println("[StudentDataFetcher] ✓ Indexed " + added[0] + " appended student records");
+        return true;
+    }
+
+    private static StudentRegistryIndex load(File file) {
+        // Stat before reading: if the file is appended to while we read, the
+        // stale stamp makes the next lookup re-read it.
+        long size = file.length();
+        long modified = file.lastModified();
+        Map<String, StudentMedicalData> byBitsId = new ConcurrentHashMap<>();
+        List<StudentMedicalData> inFileOrder = new ArrayList<>();
+
+        if (!file.exists()) {
+            System.err.println("[StudentDataFetcher] ✗ Registry file not found: " + file.getAbsolutePath());
+            return new StudentRegistryIndex(file, CsvTail.at(file, size), modified, byBitsId, inFileOrder);
+        }
+
+        try (CsvReader reader = new CsvReader(new FileReader(file))) {
+            CsvRow row = new CsvRow();
+            reader.next(row); // Skip header
+
+            while (reader.next(row)) {
+                if (row.size() < 2) {
+                    continue;
+                }
+                StudentMedicalData data = new StudentMedicalData(row.toArray());
+                // Keep the first registration for an ID, as the sequential scan did
+                if (byBitsId.putIfAbsent(normalize(data.bitsId), data) == null) {
+                    inFileOrder.add(data);
+                }
+            }
+            System.out.println("[StudentDataFetcher] ✓ Indexed " + byBitsId.size() + " student records");
+        } catch (IOException e) {
+            System.err.println("[StudentDataFetcher] ✗ ERROR reading CSV: " + e.getMessage());
+            e.printStackTrace();
+            // Never cache a partial read; retry on the next lookup
+            return new StudentRegistryIndex(file, CsvTail.at(file, -1), -1, byBitsId, inFileOrder);
+        }
+
+        return new StudentRegistryIndex(file, CsvTail.at(file, size), modified, byBitsId, inFileOrder);
+    }
+}